@@ -0,0 +1,67 @@
+package com.ecommerce;
+
+import com.ecommerce.cache.CartStore.CartSnapshot;
+import com.ecommerce.entity.Cart;
+import com.ecommerce.entity.CartItem;
+import com.ecommerce.entity.Product;
+import com.ecommerce.money.Money;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Detached entity graphs shared by the benchmarks, shaped like the sample catalog in DataLoader.
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    public static Cart cart(int lines) {
+        Cart cart = Cart.builder().id(1L).build();
+        for (int i = 0; i < lines; i++) {
+            Product product = product(i);
+            cart.getItems().add(CartItem.builder()
+                    .id((long) i + 1)
+                    .cart(cart)
+                    .product(product)
+                    .quantity(1 + i % 3)
+                    .build());
+        }
+        return cart;
+    }
+
+    public static CartSnapshot cartSnapshot(int lines) {
+        List<CartSnapshot.Line> items = new ArrayList<>(lines);
+        long totalMinor = 0;
+        for (int i = 0; i < lines; i++) {
+            long unitPriceMinor = 1999 + 100L * i;
+            items.add(new CartSnapshot.Line((long) i + 1, (long) i + 1, 1 + i % 3, unitPriceMinor));
+            totalMinor += unitPriceMinor * (1 + i % 3);
+        }
+        return new CartSnapshot(1L, 1L, totalMinor, items);
+    }
+
+    public static Map<Long, Product> products(int count) {
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(product(i));
+        }
+        return products.stream().collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+
+    private static Product product(int i) {
+        return Product.builder()
+                .id((long) i + 1)
+                .name("Product " + (i + 1))
+                .description("Benchmark product")
+                .price(Money.ofMinor(1999 + 100L * i))
+                .stock(1_000)
+                .category("Electronics")
+                .active(true)
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+package com.ecommerce.dto.response;
+
+import com.ecommerce.enums.OrderStatus;
+import com.ecommerce.money.Money;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the response envelope, configured like Spring Boot's default mapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ApiResponseSerializationBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int lines;
+
+    private ObjectWriter writer;
+    private ApiResponse<CartResponse> cartResponse;
+    private ApiResponse<OrderResponse> orderResponse;
+
+    @Setup
+    public void setUp() {
+        writer = new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .writer();
+
+        List<CartResponse.CartItemResponse> cartItems = new ArrayList<>();
+        List<OrderResponse.OrderItemResponse> orderItems = new ArrayList<>();
+        Money total = Money.ZERO;
+        for (int i = 0; i < lines; i++) {
+            Money price = Money.ofMinor(1999 + 100L * i);
+            Money subtotal = price.times(2);
+            total = total.plus(subtotal);
+            cartItems.add(CartResponse.CartItemResponse.builder()
+                    .id((long) i).productId((long) i).productName("Product " + i)
+                    .price(price).quantity(2).subtotal(subtotal).build());
+            orderItems.add(OrderResponse.OrderItemResponse.builder()
+                    .productId((long) i).productName("Product " + i)
+                    .price(price).quantity(2).subtotal(subtotal).build());
+        }
+        cartResponse = ApiResponse.success(CartResponse.builder()
+                .id(1L).items(cartItems).totalAmount(total).totalItems(lines).build());
+        orderResponse = ApiResponse.success("Order placed successfully", OrderResponse.builder()
+                .id(1L).items(orderItems).totalAmount(total).status(OrderStatus.CONFIRMED)
+                .shippingAddress("221B Baker Street").createdAt(LocalDateTime.now()).build());
+    }
+
+    @Benchmark
+    public byte[] serializeCart() throws JsonProcessingException {
+        return writer.writeValueAsBytes(cartResponse);
+    }
+
+    @Benchmark
+    public byte[] serializeOrder() throws JsonProcessingException {
+        return writer.writeValueAsBytes(orderResponse);
+    }
+}
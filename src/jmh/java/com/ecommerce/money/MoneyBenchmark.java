@@ -0,0 +1,61 @@
+package com.ecommerce.money;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Line subtotals and a running total, as computed for carts and orders, with BigDecimal amounts
+ * (the previous representation) against {@link Money}. Run with -prof gc to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MoneyBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int lines;
+
+    private BigDecimal[] decimalPrices;
+    private Money[] prices;
+    private int[] quantities;
+
+    @Setup
+    public void setUp() {
+        decimalPrices = new BigDecimal[lines];
+        prices = new Money[lines];
+        quantities = new int[lines];
+        for (int i = 0; i < lines; i++) {
+            decimalPrices[i] = new BigDecimal("19.99").add(BigDecimal.valueOf(i));
+            prices[i] = Money.of(decimalPrices[i]);
+            quantities[i] = 1 + i % 3;
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalTotal(Blackhole blackhole) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < lines; i++) {
+            BigDecimal subtotal = decimalPrices[i].multiply(BigDecimal.valueOf(quantities[i]));
+            blackhole.consume(subtotal);
+            total = total.add(subtotal);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Money moneyTotal(Blackhole blackhole) {
+        long total = 0;
+        for (int i = 0; i < lines; i++) {
+            long subtotal = Math.multiplyExact(prices[i].amountMinor(), quantities[i]);
+            blackhole.consume(subtotal);
+            total = Math.addExact(total, subtotal);
+        }
+        return Money.ofMinor(total);
+    }
+}
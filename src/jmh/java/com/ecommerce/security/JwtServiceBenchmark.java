@@ -0,0 +1,70 @@
+package com.ecommerce.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request token authentication cost: the old path (key rebuilt and token parsed three times)
+ * against a single verification, with and without the verified-token cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET = "mySecretKey123456789012345678901234567890123456789012345678901234";
+    private static final long EXPIRATION = 86_400_000L;
+
+    private JwtService cachedJwtService;
+    private JwtService uncachedJwtService;
+    private UserDetails user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cachedJwtService = new JwtService(SECRET, EXPIRATION, 1024);
+        uncachedJwtService = new JwtService(SECRET, EXPIRATION, 0);
+        user = User.withUsername("user@test.com").password("").authorities("ROLE_USER").build();
+        token = uncachedJwtService.generateToken(user.getUsername());
+    }
+
+    @Benchmark
+    public boolean legacyVerification() {
+        String email = legacyClaims(token).getSubject();
+        return email != null
+                && legacyClaims(token).getSubject().equals(user.getUsername())
+                && !legacyClaims(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public boolean singleVerification() {
+        Claims claims = uncachedJwtService.verify(token);
+        return uncachedJwtService.isTokenValid(claims, user);
+    }
+
+    @Benchmark
+    public boolean cachedVerification() {
+        Claims claims = cachedJwtService.verify(token);
+        return cachedJwtService.isTokenValid(claims, user);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return uncachedJwtService.generateToken(user.getUsername());
+    }
+
+    private Claims legacyClaims(String token) {
+        return Jwts.parser().verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes())).build()
+                .parseSignedClaims(token).getPayload();
+    }
+}
@@ -0,0 +1,61 @@
+package com.ecommerce.security;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of rate limiting, sampled so the percentiles are visible: route matching alone,
+ * admission across many clients, and rejection of a client that is over its limit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RateLimiterBenchmark {
+
+    private static final int CLIENTS = 10_000;
+
+    private RateLimiter rateLimiter;
+    private String[] clients;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        rateLimiter = new RateLimiter(new RateLimitProperties(true, Duration.ofMinutes(10), 100_000, List.of(
+                new RateLimitProperties.Route("/api/auth/**", null, 20, Duration.ofMinutes(1), 10),
+                new RateLimitProperties.Route("/api/orders/checkout", "POST", 30, Duration.ofMinutes(1), 5),
+                new RateLimitProperties.Route("/api/cart/**", null, 1_000_000, Duration.ofSeconds(1), null),
+                new RateLimitProperties.Route("/api/products/**", null, 50, Duration.ofSeconds(1), 100))));
+        clients = new String[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            clients[i] = "user-" + i + "@test.com";
+        }
+        RateLimiter.Limit checkout = rateLimiter.match("POST", "/api/orders/checkout");
+        while (rateLimiter.acquire(checkout, "over-limit@test.com", System.nanoTime()) == 0) {
+            // drain the bucket so rejected() measures the reject path
+        }
+    }
+
+    @Benchmark
+    public RateLimiter.Limit unlimitedRoute() {
+        return rateLimiter.match("GET", "/actuator/health");
+    }
+
+    @Benchmark
+    public long admitted() {
+        RateLimiter.Limit matched = rateLimiter.match("POST", "/api/cart/items");
+        next = (next + 1) % CLIENTS;
+        return rateLimiter.acquire(matched, clients[next], System.nanoTime());
+    }
+
+    @Benchmark
+    public long rejected() {
+        RateLimiter.Limit matched = rateLimiter.match("POST", "/api/orders/checkout");
+        return rateLimiter.acquire(matched, "over-limit@test.com", System.nanoTime());
+    }
+}
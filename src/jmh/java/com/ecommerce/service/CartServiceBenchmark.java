@@ -0,0 +1,36 @@
+package com.ecommerce.service;
+
+import com.ecommerce.BenchmarkFixtures;
+import com.ecommerce.cache.CartStore.CartSnapshot;
+import com.ecommerce.dto.response.CartResponse;
+import com.ecommerce.entity.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CartServiceBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int lines;
+
+    private CartSnapshot cart;
+    private Map<Long, Product> products;
+
+    @Setup
+    public void setUp() {
+        cart = BenchmarkFixtures.cartSnapshot(lines);
+        products = BenchmarkFixtures.products(lines);
+    }
+
+    @Benchmark
+    public CartResponse mapToCartResponse() {
+        return CartService.mapToCartResponse(cart, products);
+    }
+}
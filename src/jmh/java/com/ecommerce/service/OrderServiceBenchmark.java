@@ -0,0 +1,33 @@
+package com.ecommerce.service;
+
+import com.ecommerce.BenchmarkFixtures;
+import com.ecommerce.entity.CartItem;
+import com.ecommerce.money.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OrderServiceBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int lines;
+
+    private List<CartItem> items;
+
+    @Setup
+    public void setUp() {
+        items = BenchmarkFixtures.cart(lines).getItems();
+    }
+
+    @Benchmark
+    public Money checkoutTotal() {
+        return OrderService.calculateTotal(items);
+    }
+}
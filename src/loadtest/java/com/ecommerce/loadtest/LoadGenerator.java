@@ -0,0 +1,228 @@
+package com.ecommerce.loadtest;
+
+import com.ecommerce.config.LoadTestDataLoader;
+import com.ecommerce.loadtest.LoadTestSettings.Operation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop load generator: every worker logs in as a seeded user and then keeps issuing
+ * operations picked from the configured mix until the run ends.
+ */
+public class LoadGenerator {
+
+    private final String baseUrl;
+    private final LoadTestSettings settings;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LoadTestReport report = new LoadTestReport();
+    private final AtomicInteger registrations = new AtomicInteger();
+    // Seeded user email -> token; workers that share a user share its session like tabs of one customer
+    private final Map<String, String> sessions = new ConcurrentHashMap<>();
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private List<Long> productIds;
+
+    public LoadGenerator(String baseUrl, LoadTestSettings settings) {
+        this.baseUrl = baseUrl;
+        this.settings = settings;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        this.operations = settings.mix().keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += settings.mix().get(operations[i]);
+            cumulativeWeights[i] = sum;
+        }
+    }
+
+    public LoadTestReport run() throws Exception {
+        productIds = loadProductIds();
+        openSessions();
+
+        long measureFrom = System.nanoTime() + settings.warmup().toNanos();
+        long deadline = measureFrom + settings.duration().toNanos();
+        System.out.printf("Running %d workers: %s warmup, %s measured, mix %s%n",
+                settings.concurrency(), settings.warmup(), settings.duration(), settings.mix());
+
+        ExecutorService workers = newWorkerPool(settings.concurrency());
+        for (int i = 0; i < settings.concurrency(); i++) {
+            int worker = i;
+            workers.submit(() -> runWorker(worker, measureFrom, deadline));
+        }
+        workers.shutdown();
+        workers.awaitTermination(settings.warmup().plus(settings.duration()).toSeconds() + 60, TimeUnit.SECONDS);
+
+        report.setElapsed(settings.duration());
+        return report;
+    }
+
+    private static ExecutorService newWorkerPool(int concurrency) {
+        try {
+            // Java 21+: one virtual thread per worker, so thousands of clients stay cheap
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(concurrency);
+        }
+    }
+
+    private void runWorker(int worker, long measureFrom, long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String email = LoadTestDataLoader.email(worker % settings.users());
+        String token = sessions.get(email);
+
+        while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+            switch (pick(random)) {
+                case BROWSE -> {
+                    String category = LoadTestDataLoader.CATEGORIES.get(random.nextInt(LoadTestDataLoader.CATEGORIES.size()));
+                    send("GET /api/products/category/{category}",
+                            get("/api/products/category/" + category, null), measureFrom);
+                    send("GET /api/products/{id}",
+                            get("/api/products/" + randomProduct(random), null), measureFrom);
+                }
+                case CART -> send("POST /api/cart/items",
+                        post("/api/cart/items", "{\"productId\":" + randomProduct(random) + ",\"quantity\":1}", token),
+                        measureFrom);
+                case CHECKOUT -> send("POST /api/orders/checkout",
+                        post("/api/orders/checkout", "{\"shippingAddress\":\"1 Load Test Way\"}", token),
+                        measureFrom);
+                case LOGIN -> {
+                    String refreshed = login(email, measureFrom);
+                    token = refreshed != null ? refreshed : token;
+                }
+                case REGISTER -> {
+                    String newEmail = "loadtest-new-" + worker + "-" + registrations.incrementAndGet() + "@test.com";
+                    send("POST /api/auth/register", post("/api/auth/register",
+                            "{\"email\":\"" + newEmail + "\",\"password\":\"" + LoadTestDataLoader.PASSWORD
+                                    + "\",\"fullName\":\"Load Test Registrant\"}", null), measureFrom);
+                }
+            }
+        }
+    }
+
+    private void openSessions() throws InterruptedException {
+        int seededUsers = Math.min(settings.users(), settings.concurrency());
+        System.out.printf("Logging in %d seeded users%n", seededUsers);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(seededUsers, 8));
+        for (int i = 0; i < seededUsers; i++) {
+            String email = LoadTestDataLoader.email(i);
+            // Far-future measurement start: session setup is never part of the results
+            pool.submit(() -> {
+                String token = login(email, Long.MAX_VALUE);
+                if (token != null) {
+                    sessions.put(email, token);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+    }
+
+    private String login(String email, long measureFrom) {
+        String body = send("POST /api/auth/login", post("/api/auth/login",
+                "{\"email\":\"" + email + "\",\"password\":\"" + LoadTestDataLoader.PASSWORD + "\"}", null), measureFrom);
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(body).path("data").path("token").asText(null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sends the request and records its latency once the warmup is over. Returns the body of a
+     * successful response, or null.
+     */
+    private String send(String endpoint, HttpRequest request, long measureFrom) {
+        long start = System.nanoTime();
+        String body = null;
+        boolean success = false;
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            success = response.statusCode() < 400;
+            body = success ? response.body() : null;
+        } catch (IOException e) {
+            // Counted as an error below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (start >= measureFrom) {
+            report.record(endpoint, (System.nanoTime() - start) / 1_000, success);
+        }
+        return body;
+    }
+
+    private HttpRequest get(String path, String token) {
+        return request(path, token).GET().build();
+    }
+
+    private HttpRequest post(String path, String json, String token) {
+        return request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private Operation pick(ThreadLocalRandom random) {
+        int roll = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (roll < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private long randomProduct(ThreadLocalRandom random) {
+        return productIds.get(random.nextInt(productIds.size()));
+    }
+
+    private List<Long> loadProductIds() throws IOException, InterruptedException {
+        List<Long> ids = new ArrayList<>();
+        int totalPages = 1;
+        for (int page = 0; page < totalPages; page++) {
+            HttpResponse<String> response = client.send(get("/api/products?size=100&page=" + page, null),
+                    HttpResponse.BodyHandlers.ofString());
+            JsonNode data = objectMapper.readTree(response.body()).path("data");
+            for (JsonNode product : data.path("products")) {
+                ids.add(product.path("id").asLong());
+            }
+            totalPages = data.path("totalPages").asInt();
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("No products available to load test against");
+        }
+        return ids;
+    }
+}
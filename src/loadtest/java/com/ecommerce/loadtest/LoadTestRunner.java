@@ -0,0 +1,47 @@
+package com.ecommerce.loadtest;
+
+import com.ecommerce.CartCheckoutApiApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Boots the application with the loadtest profile on a random port, drives it with
+ * {@link LoadGenerator} and prints per-endpoint throughput and latency percentiles. Full HDR
+ * percentile distributions are written to target/loadtest.
+ *
+ * All settings are regular Spring properties (see {@link LoadTestSettings}), e.g.
+ * {@code --loadtest.users=1000 --loadtest.concurrency=64 --loadtest.duration=60s}.
+ */
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        String[] bootArgs = Stream.concat(
+                Stream.of("--server.port=0", "--spring.jpa.show-sql=false"),
+                Arrays.stream(args).filter(arg -> !arg.isBlank())
+        ).toArray(String[]::new);
+
+        SpringApplication application = new SpringApplication(CartCheckoutApiApplication.class);
+        application.setAdditionalProfiles("loadtest");
+        ConfigurableApplicationContext context = application.run(bootArgs);
+        int exitCode = 0;
+        try {
+            LoadTestSettings settings = LoadTestSettings.from(context.getEnvironment());
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+            LoadTestReport report = new LoadGenerator("http://localhost:" + port, settings).run();
+            report.print(System.out);
+            report.writeHistograms(Path.of("target", "loadtest"));
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 1;
+        } finally {
+            SpringApplication.exit(context);
+        }
+        System.exit(exitCode);
+    }
+}
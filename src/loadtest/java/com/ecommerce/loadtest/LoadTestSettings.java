@@ -0,0 +1,48 @@
+package com.ecommerce.loadtest;
+
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Load test configuration, read from the booted application's environment.
+ *
+ * @param users       seeded users the workers log in as (also used by the seeder)
+ * @param products    seeded products the workers browse and buy (also used by the seeder)
+ * @param concurrency number of concurrent client workers
+ * @param warmup      time to run before latencies are recorded
+ * @param duration    measured run time after warmup
+ * @param mix         relative weight of each operation, e.g. browse=60,cart=25,checkout=5,login=5,register=5
+ */
+public record LoadTestSettings(int users,
+                               int products,
+                               int concurrency,
+                               Duration warmup,
+                               Duration duration,
+                               Map<Operation, Integer> mix) {
+
+    public enum Operation {
+        BROWSE, CART, CHECKOUT, LOGIN, REGISTER
+    }
+
+    public static LoadTestSettings from(Environment env) {
+        return new LoadTestSettings(
+                env.getProperty("loadtest.users", Integer.class, 1000),
+                env.getProperty("loadtest.products", Integer.class, 500),
+                env.getProperty("loadtest.concurrency", Integer.class, 32),
+                env.getProperty("loadtest.warmup", Duration.class, Duration.ofSeconds(5)),
+                env.getProperty("loadtest.duration", Duration.class, Duration.ofSeconds(30)),
+                parseMix(env.getProperty("loadtest.mix", "browse=60,cart=25,checkout=5,login=5,register=5")));
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase()), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+}
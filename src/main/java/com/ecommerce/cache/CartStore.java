@@ -0,0 +1,553 @@
+package com.ecommerce.cache;
+
+import com.ecommerce.entity.Cart;
+import com.ecommerce.entity.CartItem;
+import com.ecommerce.metrics.RequestDiagnostics;
+import com.ecommerce.money.Money;
+import com.ecommerce.repository.CartRepository;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Write-back store for shopping carts, keyed by user id.
+ *
+ * Cart mutations only touch an in-memory map of product id to quantity. Dirty carts are written to
+ * the carts/cart_items tables by a background flush every flush-interval, and synchronously through
+ * {@link #flush(Long)} before checkout.
+ *
+ * Eviction never drops unflushed changes and never touches the database: a clean cart is simply
+ * dropped, a dirty one is parked until the background flush has written it. A cart that is used
+ * again while parked is taken back as is, so a failing database only delays the write.
+ *
+ * Lines that have not been flushed yet have no cart_items row; until they do, their item id is the
+ * negated product id. That alias keeps resolving after the flush, so clients holding it still work.
+ */
+@Slf4j
+@Component
+public class CartStore implements DisposableBean {
+
+    private static final String CART_LINES_SQL = "SELECT ci.cart_id, ci.quantity, p.price "
+            + "FROM cart_items ci JOIN products p ON p.id = ci.product_id "
+            + "WHERE ci.cart_id IN (SELECT cart_id FROM cart_items WHERE product_id = ?)";
+    private static final String REPRICE_SQL = "UPDATE carts SET version = version + 1, total_minor = ? WHERE id = ?";
+
+    private final CartRepository cartRepository;
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<Long, CartState> carts;
+    private final StripedLoader<Long, CartState> loads;
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    // Dirty carts evicted from the cache, kept until written or used again
+    private final Map<Long, CartState> parked = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public CartStore(CartRepository cartRepository,
+                     ProductRepository productRepository,
+                     UserRepository userRepository,
+                     TransactionTemplate transactionTemplate,
+                     JdbcTemplate jdbcTemplate,
+                     @Value("${app.cart.store.max-size:100000}") long maxSize,
+                     @Value("${app.cart.store.idle-timeout:30m}") Duration idleTimeout,
+                     @Value("${app.cart.store.flush-interval:5s}") Duration flushInterval) {
+        this.cartRepository = cartRepository;
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.carts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(idleTimeout)
+                .evictionListener((Long userId, CartState state, RemovalCause cause) -> {
+                    if (userId != null && state != null) {
+                        evicted(userId, state);
+                    }
+                })
+                .recordStats()
+                .build();
+        this.loads = new StripedLoader<>(carts);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "cart-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushDirty, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public CartSnapshot get(Long userId) {
+        return update(userId, state -> {
+        });
+    }
+
+    /**
+     * Applies a change to the user's cart under its lock and returns the resulting contents.
+     */
+    public CartSnapshot update(Long userId, Consumer<CartState> change) {
+        while (true) {
+            CartState state = loads.get(userId, this::load);
+            state.lock.lock();
+            try {
+                // An evicted state was clean when dropped; retry against a freshly loaded one
+                if (state.evicted) {
+                    continue;
+                }
+                long before = state.version;
+                change.accept(state);
+                if (state.version != before) {
+                    dirty.add(userId);
+                }
+                return state.snapshot();
+            } finally {
+                state.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the lines changed after version {@code since}, or the whole cart when that version is
+     * older than the change history kept in memory.
+     */
+    public CartDelta changesSince(Long userId, long since) {
+        CartDelta[] delta = new CartDelta[1];
+        update(userId, state -> delta[0] = state.delta(since));
+        return delta[0];
+    }
+
+    /**
+     * Current version of the user's cart without loading its items, or empty when it is unknown.
+     */
+    public Optional<Long> version(Long userId) {
+        CartState state = resident(userId);
+        if (state == null) {
+            return cartRepository.findVersionByUserId(userId);
+        }
+        state.lock.lock();
+        try {
+            return state.evicted ? cartRepository.findVersionByUserId(userId) : Optional.of(state.version);
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the user's cart to the database if it has unflushed changes.
+     */
+    public void flush(Long userId) {
+        CartState state = resident(userId);
+        if (state == null) {
+            // Evicted while clean, so the database is up to date
+            dirty.remove(userId);
+            return;
+        }
+        write(userId, state);
+        if (parked.get(userId) == state) {
+            state.lock.lock();
+            try {
+                // Written and unchanged since: let it go, and make holders of the old state reload
+                if (state.version == state.flushedVersion && parked.remove(userId, state)) {
+                    state.evicted = true;
+                }
+            } finally {
+                state.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes checked-out quantities once the order transaction commits, which has already deleted
+     * the cart_items rows and stored the cart as {@code committedVersion}. Lines added in the meantime
+     * stay in the cart and are flushed again.
+     */
+    public void checkedOutAfterCommit(Long userId, Map<Long, Integer> ordered, long committedVersion) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                CartState state = resident(userId);
+                if (state == null) {
+                    return;
+                }
+                state.lock.lock();
+                try {
+                    state.version = Math.max(state.version + 1, committedVersion);
+                    ordered.forEach(state::reduce);
+                    state.assignItemIds(Map.of());
+                    state.flushedVersion = committedVersion;
+                    if (state.version != committedVersion) {
+                        dirty.add(userId);
+                    }
+                } finally {
+                    state.lock.unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Refreshes every cart holding the product after a change that shows in cart responses (price,
+     * name or availability): carts in memory are re-priced in place and marked dirty, and the stored
+     * totals of the other carts are recomputed. Both bump the cart version even when the price is
+     * unchanged, so clients holding the old ETag refetch. Stored prices are converted to minor units
+     * through {@link Money}, never in SQL, so totals follow the currency's scale.
+     */
+    public void productChanged(Long productId, Money price) {
+        long unitPriceMinor = price.amountMinor();
+        Map<Long, CartState> states = new HashMap<>(parked);
+        states.putAll(carts.asMap());
+        states.forEach((userId, state) -> {
+            state.lock.lock();
+            try {
+                Integer quantity = state.quantity(productId);
+                if (quantity != null && !state.evicted) {
+                    state.refresh(productId, quantity, unitPriceMinor);
+                    dirty.add(userId);
+                }
+            } finally {
+                state.lock.unlock();
+            }
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Long> totals = new HashMap<>();
+            jdbcTemplate.query(CART_LINES_SQL, (ResultSet row) -> {
+                totals.merge(row.getLong(1), row.getInt(2) * Money.of(row.getBigDecimal(3)).amountMinor(), Long::sum);
+            }, productId);
+            List<Object[]> args = new ArrayList<>(totals.size());
+            totals.forEach((cartId, totalMinor) -> args.add(new Object[]{totalMinor, cartId}));
+            jdbcTemplate.batchUpdate(REPRICE_SQL, args);
+        });
+    }
+
+    public long size() {
+        return carts.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return carts.stats();
+    }
+
+    public int parkedCount() {
+        return parked.size();
+    }
+
+    private CartState resident(Long userId) {
+        CartState state = carts.getIfPresent(userId);
+        return state != null ? state : parked.get(userId);
+    }
+
+    private CartState load(Long userId) {
+        CartState evicted = parked.remove(userId);
+        if (evicted != null) {
+            return evicted;
+        }
+        long started = RequestDiagnostics.start();
+        try {
+            return transactionTemplate.execute(status -> {
+                Cart cart = cartRepository.findWithItemsByUserId(userId)
+                        .orElseGet(() -> cartRepository.save(Cart.builder().user(userRepository.getReferenceById(userId)).build()));
+                CartState state = new CartState(cart.getId(), cart.getVersion());
+                Map<Long, Long> itemIds = new HashMap<>();
+                for (CartItem item : cart.getItems()) {
+                    state.apply(item.getProduct().getId(), item.getQuantity(), item.getProduct().getPrice().amountMinor());
+                    itemIds.put(item.getProduct().getId(), item.getId());
+                }
+                state.assignItemIds(itemIds);
+                return state;
+            });
+        } finally {
+            RequestDiagnostics.stop("cart-load", started);
+        }
+    }
+
+    private void flushDirty() {
+        for (Long userId : List.copyOf(dirty)) {
+            try {
+                flush(userId);
+            } catch (RuntimeException e) {
+                log.error("Failed to flush cart of user {}, will retry", userId, e);
+            }
+        }
+    }
+
+    // Runs on the cache's maintenance thread, so it must not block on the database
+    private void evicted(Long userId, CartState state) {
+        state.lock.lock();
+        try {
+            if (state.version == state.flushedVersion) {
+                state.evicted = true;
+            } else {
+                parked.put(userId, state);
+                dirty.add(userId);
+            }
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    private void write(Long userId, CartState state) {
+        // One flush per cart at a time; mutations only wait for the snapshot, not for the database
+        long started = RequestDiagnostics.start();
+        state.flushLock.lock();
+        try {
+            long version;
+            long totalMinor;
+            Map<Long, Integer> quantities;
+            state.lock.lock();
+            try {
+                if (state.version == state.flushedVersion) {
+                    dirty.remove(userId);
+                    return;
+                }
+                version = state.version;
+                totalMinor = state.totalMinor;
+                quantities = state.quantities();
+            } finally {
+                state.lock.unlock();
+            }
+
+            Map<Long, Long> itemIds = transactionTemplate.execute(status -> {
+                Cart cart = cartRepository.findWithItemsByUserId(userId)
+                        .orElseThrow(() -> new IllegalStateException("Cart not found for user " + userId));
+                Map<Long, CartItem> existing = new HashMap<>();
+                for (CartItem item : cart.getItems()) {
+                    existing.put(item.getProduct().getId(), item);
+                }
+                cart.getItems().removeIf(item -> !quantities.containsKey(item.getProduct().getId()));
+                quantities.forEach((productId, quantity) -> {
+                    CartItem item = existing.get(productId);
+                    if (item != null) {
+                        item.setQuantity(quantity);
+                    } else {
+                        cart.getItems().add(CartItem.builder()
+                                .cart(cart)
+                                .product(productRepository.getReferenceById(productId))
+                                .quantity(quantity)
+                                .build());
+                    }
+                });
+                cart.setVersion(version);
+                cart.setTotalItems(quantities.size());
+                cart.setTotalMinor(totalMinor);
+                cartRepository.saveAndFlush(cart);
+                Map<Long, Long> ids = new HashMap<>();
+                for (CartItem item : cart.getItems()) {
+                    ids.put(item.getProduct().getId(), item.getId());
+                }
+                return ids;
+            });
+
+            state.lock.lock();
+            try {
+                state.assignItemIds(itemIds);
+                state.flushedVersion = version;
+                if (state.version == version) {
+                    dirty.remove(userId);
+                }
+            } finally {
+                state.lock.unlock();
+            }
+        } finally {
+            state.flushLock.unlock();
+            RequestDiagnostics.stop("cart-flush", started);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flusher.shutdownNow();
+        flushDirty();
+    }
+
+    /**
+     * Mutable cart contents; only touched while holding the store's lock for the cart.
+     *
+     * Each line is one small object with primitive fields, in a single map keyed by product id, so a
+     * line costs one map entry rather than an entry in each of several parallel maps.
+     */
+    public static class CartState {
+
+        private static final int MAX_REMOVED = 100;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private final Long cartId;
+        private final Map<Long, Line> lines = new LinkedHashMap<>();
+        // Version at which recently removed lines disappeared, bounded by MAX_REMOVED
+        private final Map<Long, Long> removedAt = new HashMap<>();
+        private long totalMinor;
+        private long version;
+        private long flushedVersion;
+        private long historyFrom;
+        private boolean evicted;
+
+        private CartState(Long cartId, long version) {
+            this.cartId = cartId;
+            this.version = version;
+            this.flushedVersion = version;
+            this.historyFrom = version;
+        }
+
+        public Integer quantity(Long productId) {
+            Line line = lines.get(productId);
+            return line == null ? null : line.quantity;
+        }
+
+        /**
+         * Maps a cart item id, or the negated product id of an unflushed line, to its product id.
+         */
+        public Optional<Long> productIdOf(Long itemId) {
+            if (itemId < 0 && lines.containsKey(-itemId)) {
+                return Optional.of(-itemId);
+            }
+            return lines.entrySet().stream()
+                    .filter(entry -> entry.getValue().itemId == itemId)
+                    .map(Map.Entry::getKey)
+                    .findFirst();
+        }
+
+        /**
+         * Sets a line's quantity, priced at the product's current unit price in minor units.
+         */
+        public void set(Long productId, int quantity, long unitPriceMinor) {
+            Line current = lines.get(productId);
+            boolean changed = quantity <= 0
+                    ? current != null
+                    : current == null || current.quantity != quantity || current.unitPriceMinor != unitPriceMinor;
+            if (changed) {
+                version++;
+                apply(productId, quantity, unitPriceMinor);
+            }
+        }
+
+        // Marks the line changed at a new version even when quantity and price stay the same
+        private void refresh(Long productId, int quantity, long unitPriceMinor) {
+            version++;
+            apply(productId, quantity, unitPriceMinor);
+        }
+
+        public void clear() {
+            if (!lines.isEmpty()) {
+                version++;
+                List.copyOf(lines.keySet()).forEach(productId -> apply(productId, 0, 0));
+            }
+        }
+
+        // Takes ordered units off a line after checkout, keeping its price
+        private void reduce(Long productId, int ordered) {
+            Line line = lines.get(productId);
+            if (line != null) {
+                apply(productId, line.quantity > ordered ? line.quantity - ordered : 0, line.unitPriceMinor);
+            }
+        }
+
+        private Map<Long, Integer> quantities() {
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            lines.forEach((productId, line) -> quantities.put(productId, line.quantity));
+            return quantities;
+        }
+
+        // Item ids of the rows just written; lines added since keep their product id alias
+        private void assignItemIds(Map<Long, Long> itemIds) {
+            lines.forEach((productId, line) -> line.itemId = itemIds.getOrDefault(productId, 0L));
+        }
+
+        // Keeps totalMinor in step with the lines, so totals never have to be summed on read
+        private void apply(Long productId, int quantity, long unitPriceMinor) {
+            Line line = lines.get(productId);
+            if (line != null) {
+                totalMinor -= line.quantity * line.unitPriceMinor;
+            }
+            if (quantity > 0) {
+                if (line == null) {
+                    line = new Line();
+                    lines.put(productId, line);
+                }
+                totalMinor += quantity * unitPriceMinor;
+                line.quantity = quantity;
+                line.unitPriceMinor = unitPriceMinor;
+                line.changedAt = version;
+                removedAt.remove(productId);
+                return;
+            }
+            lines.remove(productId);
+            removedAt.put(productId, version);
+            if (removedAt.size() > MAX_REMOVED) {
+                // Older clients get the whole cart instead of an unbounded list of removals
+                removedAt.clear();
+                historyFrom = version;
+            }
+        }
+
+        private CartSnapshot snapshot() {
+            List<CartSnapshot.Line> snapshot = new ArrayList<>(lines.size());
+            lines.forEach((productId, line) -> snapshot.add(line.toSnapshot(productId)));
+            return new CartSnapshot(cartId, version, totalMinor, snapshot);
+        }
+
+        private CartDelta delta(long since) {
+            CartSnapshot cart = snapshot();
+            if (since < historyFrom || since > version) {
+                return new CartDelta(cart, true, cart.lines(), List.of());
+            }
+            List<CartSnapshot.Line> changed = new ArrayList<>();
+            lines.forEach((productId, line) -> {
+                if (line.changedAt > since) {
+                    changed.add(line.toSnapshot(productId));
+                }
+            });
+            List<Long> removed = new ArrayList<>();
+            removedAt.forEach((productId, removedVersion) -> {
+                if (removedVersion > since) {
+                    removed.add(productId);
+                }
+            });
+            return new CartDelta(cart, false, changed, removed);
+        }
+
+        private static final class Line {
+
+            private int quantity;
+            // Unit price in minor units that the line contributes to totalMinor
+            private long unitPriceMinor;
+            // Id of the cart_items row, 0 until the line has been flushed
+            private long itemId;
+            // Version at which the line last changed
+            private long changedAt;
+
+            private CartSnapshot.Line toSnapshot(Long productId) {
+                return new CartSnapshot.Line(itemId != 0 ? itemId : -productId, productId, quantity, unitPriceMinor);
+            }
+        }
+    }
+
+    public record CartSnapshot(Long cartId, long version, long totalMinor, List<Line> lines) {
+
+        public record Line(Long itemId, Long productId, int quantity, long unitPriceMinor) {
+        }
+    }
+
+    public record CartDelta(CartSnapshot cart, boolean full, List<CartSnapshot.Line> changed, List<Long> removedProductIds) {
+    }
+}
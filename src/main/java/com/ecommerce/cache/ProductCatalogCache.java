@@ -0,0 +1,95 @@
+package com.ecommerce.cache;
+
+import com.ecommerce.entity.Product;
+import com.ecommerce.repository.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache of products by id, used for product pages and for cart and search responses.
+ * Listing pages are served by projection queries instead, since their membership depends on stock.
+ */
+@Component
+public class ProductCatalogCache {
+
+    private final ProductRepository productRepository;
+    private final Cache<Long, Product> products;
+    private final StripedLoader<Long, Product> loads;
+
+    public ProductCatalogCache(ProductRepository productRepository,
+                               @Value("${app.catalog.cache.max-size:10000}") long maxSize,
+                               @Value("${app.catalog.cache.ttl:10m}") Duration ttl) {
+        this.productRepository = productRepository;
+        this.products = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.loads = new StripedLoader<>(products);
+    }
+
+    public Optional<Product> get(Long id) {
+        return Optional.ofNullable(loads.get(id, key -> productRepository.findById(key).map(this::copy).orElse(null)));
+    }
+
+    public List<Product> getAll(List<Long> ids) {
+        Map<Long, Product> found = products.getAll(ids, missing -> productRepository.findAllById(List.copyOf(missing)).stream()
+                .collect(Collectors.toMap(Product::getId, this::copy)));
+        return ids.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Drops the given products once the current transaction commits, so readers never repopulate
+     * the cache with values that are about to change.
+     */
+    public void evictAfterCommit(Collection<Long> ids) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            loads.invalidateAll(ids);
+            return;
+        }
+        List<Long> pending = List.copyOf(ids);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                loads.invalidateAll(pending);
+            }
+        });
+    }
+
+    public void invalidate(Long id) {
+        loads.invalidate(id);
+    }
+
+    public CacheStats productStats() {
+        return products.stats();
+    }
+
+    public long productCount() {
+        return products.estimatedSize();
+    }
+
+    private Product copy(Product product) {
+        return Product.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .description(product.getDescription())
+                .price(product.getPrice())
+                .stock(product.getStock())
+                .category(product.getCategory())
+                .imageUrl(product.getImageUrl())
+                .active(product.getActive())
+                .build();
+    }
+}
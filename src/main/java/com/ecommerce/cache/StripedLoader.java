@@ -0,0 +1,73 @@
+package com.ecommerce.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Read-through access to a Caffeine cache whose loads query the database.
+ *
+ * Caffeine's {@code get(key, loader)} runs the loader inside a map compute, which holds a synchronized
+ * bin lock and so pins a virtual thread to its carrier for the whole query. Here the loader runs under
+ * one of a fixed set of ReentrantLock stripes instead. Loads and invalidations of the same key still
+ * never overlap, so an invalidation cannot be undone by a load that read the old value before it.
+ */
+public class StripedLoader<K, V> {
+
+    private static final int STRIPES = 64;
+
+    private final Cache<K, V> cache;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public StripedLoader(Cache<K, V> cache) {
+        this.cache = cache;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Returns the cached value, loading and caching it if absent; a null from the loader is not cached.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = cache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        ReentrantLock lock = stripe(key);
+        lock.lock();
+        try {
+            // Loaded meanwhile by the caller holding the stripe; not counted as a second miss
+            value = cache.asMap().get(key);
+            if (value == null) {
+                value = loader.apply(key);
+                if (value != null) {
+                    cache.put(key, value);
+                }
+            }
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        ReentrantLock lock = stripe(key);
+        lock.lock();
+        try {
+            cache.invalidate(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll(Collection<? extends K> keys) {
+        keys.forEach(this::invalidate);
+    }
+
+    private ReentrantLock stripe(K key) {
+        return stripes[key.hashCode() & (STRIPES - 1)];
+    }
+}
@@ -2,6 +2,7 @@ package com.ecommerce.config;
 
 import com.ecommerce.entity.*;
 import com.ecommerce.enums.Role;
+import com.ecommerce.money.Money;
 import com.ecommerce.repository.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.CommandLineRunner;
@@ -44,7 +45,7 @@ public class DataLoader implements CommandLineRunner {
         productRepository.save(Product.builder()
                 .name("iPhone 15 Pro")
                 .description("Latest Apple smartphone with A17 Pro chip")
-                .price(new BigDecimal("999.99"))
+                .price(Money.of(new BigDecimal("999.99")))
                 .stock(50)
                 .category("Electronics")
                 .imageUrl("https://example.com/iphone15.jpg")
@@ -54,7 +55,7 @@ public class DataLoader implements CommandLineRunner {
         productRepository.save(Product.builder()
                 .name("MacBook Pro 14\"")
                 .description("Apple M3 Pro laptop with 18GB RAM")
-                .price(new BigDecimal("1999.99"))
+                .price(Money.of(new BigDecimal("1999.99")))
                 .stock(30)
                 .category("Electronics")
                 .imageUrl("https://example.com/macbook.jpg")
@@ -64,7 +65,7 @@ public class DataLoader implements CommandLineRunner {
         productRepository.save(Product.builder()
                 .name("Sony WH-1000XM5")
                 .description("Premium noise-cancelling headphones")
-                .price(new BigDecimal("349.99"))
+                .price(Money.of(new BigDecimal("349.99")))
                 .stock(100)
                 .category("Electronics")
                 .imageUrl("https://example.com/sony.jpg")
@@ -74,7 +75,7 @@ public class DataLoader implements CommandLineRunner {
         productRepository.save(Product.builder()
                 .name("Nike Air Max")
                 .description("Classic running shoes")
-                .price(new BigDecimal("129.99"))
+                .price(Money.of(new BigDecimal("129.99")))
                 .stock(200)
                 .category("Shoes")
                 .imageUrl("https://example.com/nike.jpg")
@@ -84,7 +85,7 @@ public class DataLoader implements CommandLineRunner {
         productRepository.save(Product.builder()
                 .name("Levi's 501 Jeans")
                 .description("Original fit jeans")
-                .price(new BigDecimal("79.99"))
+                .price(Money.of(new BigDecimal("79.99")))
                 .stock(150)
                 .category("Clothing")
                 .imageUrl("https://example.com/levis.jpg")
@@ -0,0 +1,76 @@
+package com.ecommerce.config;
+
+import com.ecommerce.metrics.RequestDiagnostics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Adds the "handler" and "serialization" phases to {@link RequestDiagnostics}: the handler is timed by
+ * an interceptor, and JSON responses are written by a Jackson converter that times itself.
+ */
+@Configuration
+public class DiagnosticsConfig implements WebMvcConfigurer {
+
+    private static final String HANDLER_STARTED = DiagnosticsConfig.class.getName() + ".handlerStarted";
+
+    @Override
+    public void addInterceptors(@NonNull InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                     @NonNull Object handler) {
+                long started = RequestDiagnostics.start();
+                if (started != 0) {
+                    request.setAttribute(HANDLER_STARTED, started);
+                }
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                        @NonNull Object handler, Exception ex) {
+                if (request.getAttribute(HANDLER_STARTED) instanceof Long started) {
+                    RequestDiagnostics.stop("handler", started);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void extendMessageConverters(@NonNull List<HttpMessageConverter<?>> converters) {
+        converters.replaceAll(converter -> converter.getClass() == MappingJackson2HttpMessageConverter.class
+                ? new TimedJacksonConverter((MappingJackson2HttpMessageConverter) converter) : converter);
+    }
+
+    private static final class TimedJacksonConverter extends MappingJackson2HttpMessageConverter {
+
+        TimedJacksonConverter(MappingJackson2HttpMessageConverter converter) {
+            super(converter.getObjectMapper());
+            setSupportedMediaTypes(converter.getSupportedMediaTypes());
+        }
+
+        @Override
+        protected void writeInternal(@NonNull Object object, Type type, @NonNull HttpOutputMessage outputMessage)
+                throws IOException, HttpMessageNotWritableException {
+            long started = RequestDiagnostics.start();
+            try {
+                super.writeInternal(object, type, outputMessage);
+            } finally {
+                RequestDiagnostics.stop("serialization", started);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.ecommerce.config;
+
+import com.ecommerce.entity.*;
+import com.ecommerce.enums.Role;
+import com.ecommerce.money.Money;
+import com.ecommerce.repository.*;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds a larger dataset for load testing: loadtest.users users (loadtest-N@test.com) with empty
+ * carts and loadtest.products products with effectively unlimited stock.
+ */
+@Component
+@Profile("loadtest")
+@RequiredArgsConstructor
+public class LoadTestDataLoader implements CommandLineRunner {
+
+    public static final String PASSWORD = "loadtest123";
+    public static final List<String> CATEGORIES = List.of("Electronics", "Shoes", "Clothing", "Books", "Home", "Sports", "Toys", "Beauty");
+    private static final int CHUNK_SIZE = 500;
+
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final CartRepository cartRepository;
+    private final PasswordEncoder passwordEncoder;
+
+    @Value("${loadtest.users:1000}")
+    private int users;
+
+    @Value("${loadtest.products:500}")
+    private int products;
+
+    @Override
+    public void run(String... args) {
+        // Every seeded user shares one password, so hash it once instead of once per user
+        String password = passwordEncoder.encode(PASSWORD);
+        for (int from = 0; from < users; from += CHUNK_SIZE) {
+            List<User> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(from + CHUNK_SIZE, users); i++) {
+                chunk.add(User.builder()
+                        .email(email(i))
+                        .password(password)
+                        .fullName("Load Test User " + i)
+                        .role(Role.ROLE_USER)
+                        .build());
+            }
+            userRepository.saveAll(chunk);
+            cartRepository.saveAll(chunk.stream().map(user -> Cart.builder().user(user).build()).toList());
+        }
+
+        for (int from = 0; from < products; from += CHUNK_SIZE) {
+            List<Product> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(from + CHUNK_SIZE, products); i++) {
+                chunk.add(Product.builder()
+                        .name("Load Test Product " + i)
+                        .description("Seeded product " + i + " for load testing")
+                        .price(Money.ofMinor(499 + 100L * (i % 500)))
+                        .stock(1_000_000)
+                        .category(CATEGORIES.get(i % CATEGORIES.size()))
+                        .active(true)
+                        .build());
+            }
+            productRepository.saveAll(chunk);
+        }
+
+        System.out.println("Load test data loaded: " + users + " users, " + products + " products");
+    }
+
+    public static String email(int index) {
+        return "loadtest-" + index + "@test.com";
+    }
+}
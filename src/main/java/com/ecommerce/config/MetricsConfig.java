@@ -0,0 +1,30 @@
+package com.ecommerce.config;
+
+import com.ecommerce.metrics.StatementCountingDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Metrics wiring that Spring Boot's actuator does not provide on its own. The data source is wrapped
+ * so statements can be counted per request; the pool underneath stays reachable through
+ * {@link DataSource#unwrap}, which Boot relies on for the hikaricp.* metrics.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public static BeanPostProcessor statementCountingDataSource() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof StatementCountingDataSource)) {
+                    return new StatementCountingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
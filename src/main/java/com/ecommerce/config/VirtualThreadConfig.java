@@ -0,0 +1,84 @@
+package com.ecommerce.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * Settings that only apply when the application runs with spring.threads.virtual.enabled=true on
+ * Java 21. Spring Boot then serves Tomcat requests and runs its task executors on virtual threads.
+ *
+ * Request concurrency is no longer capped by the Tomcat pool, so the Hikari pool becomes the real
+ * limit. It is sized from the CPU count (unless spring.datasource.hikari.maximum-pool-size is set)
+ * and waits for a connection are bounded, so a burst of virtual threads queues briefly and then
+ * fails fast instead of piling up.
+ *
+ * Virtual threads can still be pinned. The in-memory caches load outside Caffeine's synchronized
+ * compute (see {@link com.ecommerce.cache.StripedLoader}), but code that blocks inside a synchronized
+ * block, such as some JDBC drivers, pins its carrier for the duration. Such pins are reported through
+ * JFR by {@link PinnedThreadMonitor}.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    @Bean
+    public static BeanPostProcessor virtualThreadPoolSizing(Environment env) {
+        return new BeanPostProcessor() {
+            // Before initialization, so the pool is configured before other post-processors wrap it
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    if (!env.containsProperty("spring.datasource.hikari.maximum-pool-size")) {
+                        int poolSize = env.getProperty("app.virtual-threads.pool-size", Integer.class,
+                                Runtime.getRuntime().availableProcessors() * 2 + 1);
+                        dataSource.setMaximumPoolSize(poolSize);
+                        dataSource.setMinimumIdle(poolSize);
+                    }
+                    dataSource.setConnectionTimeout(env.getProperty("app.virtual-threads.connection-timeout",
+                            Duration.class, Duration.ofSeconds(2)).toMillis());
+                    log.info("Virtual threads enabled: Hikari pool size {}, connection timeout {} ms",
+                            dataSource.getMaximumPoolSize(), dataSource.getConnectionTimeout());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public PinnedThreadMonitor pinnedThreadMonitor(Environment env) {
+        return new PinnedThreadMonitor(env.getProperty("app.virtual-threads.pinned-threshold",
+                Duration.class, Duration.ofMillis(20)));
+    }
+
+    /**
+     * Logs every virtual thread that stays pinned to its carrier (for example inside a synchronized
+     * block doing I/O) for longer than the threshold, with the stack trace that pinned it.
+     */
+    static class PinnedThreadMonitor implements DisposableBean {
+
+        private final RecordingStream stream = new RecordingStream();
+
+        PinnedThreadMonitor(Duration threshold) {
+            stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+            stream.onEvent("jdk.VirtualThreadPinned", event -> log.warn("Virtual thread pinned for {} ms\n{}",
+                    event.getDuration().toMillis(), event.getStackTrace()));
+            stream.startAsync();
+        }
+
+        @Override
+        public void destroy() {
+            stream.close();
+        }
+    }
+}
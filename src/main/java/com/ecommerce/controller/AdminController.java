@@ -0,0 +1,47 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.cache.CartStore;
+import com.ecommerce.cache.ProductCatalogCache;
+import com.ecommerce.dto.response.*;
+import com.ecommerce.security.PrincipalCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@Tag(name = "Admin", description = "Operational endpoints (Admin only)")
+@SecurityRequirement(name = "bearerAuth")
+public class AdminController {
+
+    private final ProductCatalogCache catalogCache;
+    private final PrincipalCache principalCache;
+    private final CartStore cartStore;
+
+    @GetMapping("/caches")
+    @Operation(summary = "Get cache statistics")
+    public ResponseEntity<ApiResponse<List<CacheStatsResponse>>> getCacheStats() {
+        return ResponseEntity.ok(ApiResponse.success(List.of(
+                toResponse("catalog.products", catalogCache.productCount(), catalogCache.productStats()),
+                toResponse("security.principals", principalCache.size(), principalCache.stats()),
+                toResponse("cart.store", cartStore.size(), cartStore.stats()))));
+    }
+
+    private CacheStatsResponse toResponse(String name, long size, CacheStats stats) {
+        return CacheStatsResponse.builder()
+                .name(name)
+                .size(size)
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .evictionCount(stats.evictionCount())
+                .hitRate(stats.hitRate())
+                .build();
+    }
+}
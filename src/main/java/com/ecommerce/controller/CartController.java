@@ -1,5 +1,6 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.dto.request.CartBulkRequest;
 import com.ecommerce.dto.request.CartItemRequest;
 import com.ecommerce.dto.response.*;
 import com.ecommerce.service.CartService;
@@ -8,9 +9,14 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Arrays;
+import java.util.Optional;
+
 @RestController
 @RequestMapping("/api/cart")
 @RequiredArgsConstructor
@@ -22,8 +28,25 @@ public class CartController {
 
     @GetMapping
     @Operation(summary = "Get current user's cart")
-    public ResponseEntity<ApiResponse<CartResponse>> getCart() {
-        return ResponseEntity.ok(ApiResponse.success(cartService.getCart()));
+    public ResponseEntity<ApiResponse<CartResponse>> getCart(@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Optional<String> current = matchingETag(ifNoneMatch);
+        if (current.isPresent()) {
+            return notModifiedResponse(current.get());
+        }
+        CartResponse cart = cartService.getCart();
+        return ResponseEntity.ok().eTag(String.valueOf(cart.getVersion())).body(ApiResponse.success(cart));
+    }
+
+    @GetMapping(params = "since")
+    @Operation(summary = "Get the cart lines changed since a cart version")
+    public ResponseEntity<ApiResponse<CartDeltaResponse>> getCartChanges(@RequestParam long since,
+                                                                         @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Optional<String> current = matchingETag(ifNoneMatch);
+        if (current.isPresent()) {
+            return notModifiedResponse(current.get());
+        }
+        CartDeltaResponse delta = cartService.getCartChanges(since);
+        return ResponseEntity.ok().eTag(String.valueOf(delta.getVersion())).body(ApiResponse.success(delta));
     }
 
     @PostMapping("/items")
@@ -32,6 +55,12 @@ public class CartController {
         return ResponseEntity.ok(ApiResponse.success("Item added to cart", cartService.addToCart(request)));
     }
 
+    @PostMapping("/items/bulk")
+    @Operation(summary = "Apply several add/set/remove operations at once")
+    public ResponseEntity<ApiResponse<CartResponse>> bulkUpdate(@Valid @RequestBody CartBulkRequest request) {
+        return ResponseEntity.ok(ApiResponse.success("Cart updated", cartService.applyOperations(request.getOperations())));
+    }
+
     @PutMapping("/items/{itemId}")
     @Operation(summary = "Update cart item quantity")
     public ResponseEntity<ApiResponse<CartResponse>> updateItem(@PathVariable Long itemId, 
@@ -45,6 +74,24 @@ public class CartController {
         return ResponseEntity.ok(ApiResponse.success("Item removed", cartService.removeFromCart(itemId)));
     }
 
+    // The current ETag if the client already holds it. Only the cart version is looked up here,
+    // the items are never loaded for an unchanged cart
+    private Optional<String> matchingETag(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return Optional.empty();
+        }
+        return cartService.getCartVersion()
+                .map(version -> "\"" + version + "\"")
+                .filter(etag -> Arrays.stream(ifNoneMatch.split(","))
+                        .map(String::trim)
+                        .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                        .anyMatch(etag::equals));
+    }
+
+    private <T> ResponseEntity<T> notModifiedResponse(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
     @DeleteMapping
     @Operation(summary = "Clear cart")
     public ResponseEntity<ApiResponse<Void>> clearCart() {
@@ -2,6 +2,8 @@ package com.ecommerce.controller;
 
 import com.ecommerce.dto.request.CheckoutRequest;
 import com.ecommerce.dto.response.*;
+import com.ecommerce.enums.OrderStatus;
+import com.ecommerce.service.IdempotencyService;
 import com.ecommerce.service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -11,8 +13,6 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/orders")
 @RequiredArgsConstructor
@@ -21,17 +21,26 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
 
     @PostMapping("/checkout")
     @Operation(summary = "Checkout cart and create order")
-    public ResponseEntity<ApiResponse<OrderResponse>> checkout(@Valid @RequestBody CheckoutRequest request) {
-        return ResponseEntity.ok(ApiResponse.success("Order placed successfully", orderService.checkout(request)));
+    public ResponseEntity<ApiResponse<OrderResponse>> checkout(@RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+                                                               @Valid @RequestBody CheckoutRequest request) {
+        OrderResponse order = idempotencyKey == null
+                ? orderService.checkout(request)
+                : idempotencyService.checkout(idempotencyKey, request, () -> orderService.checkout(request));
+        if (order.getStatus() == OrderStatus.PENDING) {
+            return ResponseEntity.accepted().body(ApiResponse.success("Order accepted for processing", order));
+        }
+        return ResponseEntity.ok(ApiResponse.success("Order placed successfully", order));
     }
 
     @GetMapping
     @Operation(summary = "Get order history")
-    public ResponseEntity<ApiResponse<List<OrderResponse>>> getOrders() {
-        return ResponseEntity.ok(ApiResponse.success(orderService.getOrderHistory()));
+    public ResponseEntity<ApiResponse<OrderPageResponse>> getOrders(@RequestParam(required = false) String cursor,
+                                                                  @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(ApiResponse.success(orderService.getOrderHistory(cursor, size)));
     }
 
     @GetMapping("/{id}")
@@ -40,6 +49,12 @@ public class OrderController {
         return ResponseEntity.ok(ApiResponse.success(orderService.getOrderById(id)));
     }
 
+    @GetMapping("/{id}/status")
+    @Operation(summary = "Get order processing status")
+    public ResponseEntity<ApiResponse<OrderStatusResponse>> getOrderStatus(@PathVariable Long id) {
+        return ResponseEntity.ok(ApiResponse.success(orderService.getOrderStatus(id)));
+    }
+
     @PostMapping("/{id}/cancel")
     @Operation(summary = "Cancel order")
     public ResponseEntity<ApiResponse<OrderResponse>> cancelOrder(@PathVariable Long id) {
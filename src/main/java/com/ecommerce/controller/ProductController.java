@@ -2,6 +2,8 @@ package com.ecommerce.controller;
 
 import com.ecommerce.dto.request.ProductRequest;
 import com.ecommerce.dto.response.ApiResponse;
+import com.ecommerce.dto.response.ProductPageResponse;
+import com.ecommerce.dto.response.ProductSearchResponse;
 import com.ecommerce.entity.Product;
 import com.ecommerce.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -12,7 +14,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.math.BigDecimal;
 
 @RestController
 @RequestMapping("/api/products")
@@ -23,9 +25,27 @@ public class ProductController {
     private final ProductService productService;
 
     @GetMapping
-    @Operation(summary = "Get all products")
-    public ResponseEntity<ApiResponse<List<Product>>> getAllProducts() {
-        return ResponseEntity.ok(ApiResponse.success(productService.getAllProducts()));
+    @Operation(summary = "List active products, paged and sorted, with optional price, stock and category filters")
+    public ResponseEntity<ApiResponse<ProductPageResponse>> getProducts(@RequestParam(required = false) String category,
+                                                                        @RequestParam(required = false) BigDecimal minPrice,
+                                                                        @RequestParam(required = false) BigDecimal maxPrice,
+                                                                        @RequestParam(required = false) Integer minStock,
+                                                                        @RequestParam(required = false) Integer page,
+                                                                        @RequestParam(required = false) Integer size,
+                                                                        @RequestParam(required = false) String sort) {
+        return ResponseEntity.ok(ApiResponse.success(
+                productService.getProducts(category, minPrice, maxPrice, minStock, page, size, sort)));
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Search products by text, with category and price filters and facet counts")
+    public ResponseEntity<ApiResponse<ProductSearchResponse>> search(@RequestParam(required = false) String q,
+                                                                     @RequestParam(required = false) String category,
+                                                                     @RequestParam(required = false) BigDecimal minPrice,
+                                                                     @RequestParam(required = false) BigDecimal maxPrice,
+                                                                     @RequestParam(required = false) Integer page,
+                                                                     @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(ApiResponse.success(productService.search(q, category, minPrice, maxPrice, page, size)));
     }
 
     @GetMapping("/{id}")
@@ -35,9 +55,13 @@ public class ProductController {
     }
 
     @GetMapping("/category/{category}")
-    @Operation(summary = "Get products by category")
-    public ResponseEntity<ApiResponse<List<Product>>> getByCategory(@PathVariable String category) {
-        return ResponseEntity.ok(ApiResponse.success(productService.getProductsByCategory(category)));
+    @Operation(summary = "List active products in a category, paged and sorted")
+    public ResponseEntity<ApiResponse<ProductPageResponse>> getByCategory(@PathVariable String category,
+                                                                          @RequestParam(required = false) Integer page,
+                                                                          @RequestParam(required = false) Integer size,
+                                                                          @RequestParam(required = false) String sort) {
+        return ResponseEntity.ok(ApiResponse.success(
+                productService.getProducts(category, null, null, null, page, size, sort)));
     }
 
     @PostMapping
@@ -0,0 +1,12 @@
+package com.ecommerce.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class CartBulkRequest {
+    @NotEmpty @Size(max = 100)
+    private List<@Valid @NotNull CartOperationRequest> operations;
+}
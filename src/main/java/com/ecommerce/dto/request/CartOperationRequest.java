@@ -0,0 +1,19 @@
+package com.ecommerce.dto.request;
+
+import com.ecommerce.enums.CartAction;
+import jakarta.validation.constraints.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperationRequest {
+    @NotNull
+    private CartAction action;
+    @NotNull
+    private Long productId;
+    @Min(0)
+    private Integer quantity;
+}
@@ -1,7 +1,9 @@
 package com.ecommerce.dto.request;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.*;
 import lombok.Data;
+import java.util.List;
 
 @Data
 public class LoginRequest {
@@ -9,4 +11,7 @@ public class LoginRequest {
     private String email;
     @NotBlank
     private String password;
+    // Items collected before signing in, merged into the user's cart
+    @Size(max = 100)
+    private List<@Valid @NotNull CartItemRequest> guestCart;
 }
@@ -5,9 +5,11 @@ import lombok.Data;
 
 @Data
 public class RegisterRequest {
+    public static final int MIN_PASSWORD_LENGTH = 6;
+
     @NotBlank @Email
     private String email;
-    @NotBlank @Size(min = 6)
+    @NotBlank @Size(min = MIN_PASSWORD_LENGTH)
     private String password;
     @NotBlank
     private String fullName;
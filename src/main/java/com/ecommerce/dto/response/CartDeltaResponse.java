@@ -0,0 +1,20 @@
+package com.ecommerce.dto.response;
+
+import com.ecommerce.money.Money;
+import lombok.*;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CartDeltaResponse {
+    private Long id;
+    private Long version;
+    // True when the requested version is too old and items holds the whole cart
+    private boolean full;
+    private List<CartResponse.CartItemResponse> items;
+    private List<Long> removedProductIds;
+    private Money totalAmount;
+    private Integer totalItems;
+}
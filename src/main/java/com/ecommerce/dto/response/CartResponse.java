@@ -1,7 +1,7 @@
 package com.ecommerce.dto.response;
 
+import com.ecommerce.money.Money;
 import lombok.*;
-import java.math.BigDecimal;
 import java.util.List;
 
 @Data
@@ -10,8 +10,9 @@ import java.util.List;
 @Builder
 public class CartResponse {
     private Long id;
+    private Long version;
     private List<CartItemResponse> items;
-    private BigDecimal totalAmount;
+    private Money totalAmount;
     private Integer totalItems;
 
 @Data
@@ -22,8 +23,8 @@ public static class CartItemResponse {
     private Long id;
     private Long productId;
     private String productName;
-    private BigDecimal price;
+    private Money price;
     private Integer quantity;
-    private BigDecimal subtotal;
+    private Money subtotal;
 }
 }
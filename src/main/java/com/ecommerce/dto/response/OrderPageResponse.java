@@ -0,0 +1,14 @@
+package com.ecommerce.dto.response;
+
+import lombok.*;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class OrderPageResponse {
+    private List<OrderResponse> orders;
+    private String nextCursor;
+    private boolean hasMore;
+}
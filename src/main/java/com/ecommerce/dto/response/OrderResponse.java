@@ -1,8 +1,8 @@
 package com.ecommerce.dto.response;
 
 import com.ecommerce.enums.OrderStatus;
+import com.ecommerce.money.Money;
 import lombok.*;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -13,7 +13,7 @@ import java.util.List;
 public class OrderResponse {
     private Long id;
     private List<OrderItemResponse> items;
-    private BigDecimal totalAmount;
+    private Money totalAmount;
     private OrderStatus status;
     private String shippingAddress;
     private LocalDateTime createdAt;
@@ -26,7 +26,7 @@ public static class OrderItemResponse {
     private Long productId;
     private String productName;
     private Integer quantity;
-    private BigDecimal price;
-    private BigDecimal subtotal;
+    private Money price;
+    private Money subtotal;
 }
 }
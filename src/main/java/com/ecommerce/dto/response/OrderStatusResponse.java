@@ -0,0 +1,16 @@
+package com.ecommerce.dto.response;
+
+import com.ecommerce.enums.OrderStatus;
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class OrderStatusResponse {
+    private Long orderId;
+    private OrderStatus status;
+    private String statusReason;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,16 @@
+package com.ecommerce.dto.response;
+
+import lombok.*;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductPageResponse {
+    private List<ProductSummary> products;
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+}
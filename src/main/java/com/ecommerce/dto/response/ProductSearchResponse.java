@@ -0,0 +1,39 @@
+package com.ecommerce.dto.response;
+
+import com.ecommerce.entity.Product;
+import com.ecommerce.money.Money;
+import lombok.*;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductSearchResponse {
+    private List<Product> products;
+    private int total;
+    private int page;
+    private int size;
+    private List<CategoryFacet> categories;
+    private List<PriceRangeFacet> priceRanges;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public static class CategoryFacet {
+    private String category;
+    private int count;
+}
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public static class PriceRangeFacet {
+    private Money from;
+    // Exclusive; null for the open-ended top range
+    private Money to;
+    private int count;
+}
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.dto.response;
+
+import com.ecommerce.money.Money;
+import lombok.*;
+
+/**
+ * Listing view of a product. Built by the query itself, so listing pages never load Product entities.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductSummary {
+    private Long id;
+    private String name;
+    private Money price;
+    private Integer stock;
+    private String category;
+}
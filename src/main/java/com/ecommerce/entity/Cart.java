@@ -23,4 +23,19 @@ public class Cart {
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
     private List<CartItem> items = new ArrayList<>();
+
+    // Increases with every change to the cart's lines; exposed to clients as the cart ETag
+    @Column(nullable = false)
+    @Builder.Default
+    private Long version = 0L;
+
+    // Running totals kept in step with the lines, so reading a cart never re-sums its items
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer totalItems = 0;
+
+    // Total amount in minor units (cents)
+    @Column(nullable = false)
+    @Builder.Default
+    private Long totalMinor = 0L;
 }
@@ -1,11 +1,14 @@
 package com.ecommerce.entity;
 
+import com.ecommerce.money.Money;
 import jakarta.persistence.*;
 import lombok.*;
-import java.math.BigDecimal;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_active_category_price", columnList = "active, category, price"),
+        @Index(name = "idx_products_active_price", columnList = "active, price")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -21,7 +24,7 @@ public class Product {
     private String description;
 
     @Column(nullable = false)
-    private BigDecimal price;
+    private Money price;
 
     @Column(nullable = false)
     private Integer stock;
@@ -1,12 +1,15 @@
 package com.ecommerce.entity;
 
 import com.ecommerce.enums.Role;
+import com.ecommerce.security.RegisteredEmailListener;
+import com.ecommerce.security.UserCacheEvictionListener;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "users")
+@EntityListeners({UserCacheEvictionListener.class, RegisteredEmailListener.class})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,7 @@
+package com.ecommerce.enums;
+
+public enum CartAction {
+    ADD,
+    SET,
+    REMOVE
+}
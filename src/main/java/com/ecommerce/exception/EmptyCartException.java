@@ -0,0 +1,7 @@
+package com.ecommerce.exception;
+
+public class EmptyCartException extends BadRequestException {
+    public EmptyCartException() {
+        super("Cart is empty");
+    }
+}
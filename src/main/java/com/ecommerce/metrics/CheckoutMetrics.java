@@ -0,0 +1,38 @@
+package com.ecommerce.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Checkout latency and outcomes. checkout.outcomes counts "success" and "insufficient_stock" for
+ * orders decided synchronously and by the checkout queue alike; "accepted" counts orders handed to
+ * the queue, which are counted again once confirmed or cancelled.
+ */
+@Component
+@RequiredArgsConstructor
+public class CheckoutMetrics {
+
+    public static final String SUCCESS = "success";
+    public static final String ACCEPTED = "accepted";
+    public static final String INSUFFICIENT_STOCK = "insufficient_stock";
+    public static final String EMPTY_CART = "empty_cart";
+    public static final String REJECTED = "rejected";
+    public static final String ERROR = "error";
+
+    private final MeterRegistry meterRegistry;
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void record(Timer.Sample sample, String outcome) {
+        sample.stop(meterRegistry.timer("checkout", "outcome", outcome));
+        count(outcome);
+    }
+
+    public void count(String outcome) {
+        meterRegistry.counter("checkout.outcomes", "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,61 @@
+package com.ecommerce.metrics;
+
+import com.ecommerce.enums.Role;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+
+/**
+ * Opt-in per-request diagnostics for administrators. Runs in the security chain after the caller has
+ * been authenticated: a request carrying the X-Debug-Timing header from an administrator gets a
+ * {@link RequestDiagnostics} recorder, and its phase timings and JDBC counts are returned in a
+ * Server-Timing header and logged as one line.
+ *
+ * The response body is buffered while diagnostics are on so the header can still be added after the
+ * body is written. Every other request, with or without the header, passes straight through: its
+ * response is not buffered and its JDBC calls are not wrapped.
+ */
+@Slf4j
+@Component
+public class DiagnosticsFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Debug-Timing";
+    private static final String ADMIN = Role.ROLE_ADMIN.name();
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        if (request.getHeader(HEADER) == null || !isAdmin(SecurityContextHolder.getContext().getAuthentication())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        RequestDiagnostics diagnostics = RequestDiagnostics.begin(request);
+        ContentCachingResponseWrapper buffered = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, buffered);
+        } finally {
+            RequestDiagnostics.end();
+            buffered.setHeader("Server-Timing", diagnostics.serverTiming());
+            log.info("diagnostics method={} uri={} status={} {}", request.getMethod(), request.getRequestURI(),
+                    buffered.getStatus(), diagnostics.logLine());
+            buffered.copyBodyToResponse();
+        }
+    }
+
+    private static boolean isAdmin(Authentication authentication) {
+        return authentication != null && authentication.isAuthenticated()
+                && authentication.getAuthorities().stream().anyMatch(authority -> ADMIN.equals(authority.getAuthority()));
+    }
+}
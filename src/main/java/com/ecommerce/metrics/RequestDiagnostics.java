@@ -0,0 +1,169 @@
+package com.ecommerce.metrics;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase timings and JDBC activity of one request, recorded only for administrators' requests that
+ * asked for diagnostics (see {@link DiagnosticsFilter}). Instrumented code calls the static methods,
+ * which do nothing but a thread-local lookup when no recorder is active:
+ *
+ * <pre>
+ * long started = RequestDiagnostics.start();
+ * ...
+ * RequestDiagnostics.stop("cart-load", started);
+ * </pre>
+ *
+ * Authentication runs before the recorder can exist, so it times itself with the request-based
+ * variants, which keep a few timestamps on the request when the diagnostics header is present.
+ */
+public final class RequestDiagnostics {
+
+    private static final ThreadLocal<RequestDiagnostics> CURRENT = new ThreadLocal<>();
+    private static final String EARLY_PHASES = RequestDiagnostics.class.getName() + ".EARLY_PHASES";
+
+    private final long startedNanos;
+    private final Map<String, long[]> phases = new LinkedHashMap<>();
+    private long statements;
+    private long rowsFetched;
+    private long rowsUpdated;
+
+    private RequestDiagnostics(long startedNanos) {
+        this.startedNanos = startedNanos;
+    }
+
+    /**
+     * Starts recording for the current thread, including the phases already timed on the request.
+     */
+    static RequestDiagnostics begin(HttpServletRequest request) {
+        EarlyPhases early = (EarlyPhases) request.getAttribute(EARLY_PHASES);
+        RequestDiagnostics diagnostics = new RequestDiagnostics(early != null ? early.startedNanos : System.nanoTime());
+        if (early != null) {
+            early.phases.forEach(diagnostics::add);
+        }
+        CURRENT.set(diagnostics);
+        return diagnostics;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Returns a start timestamp for {@link #stop}, or 0 when diagnostics are off for this request.
+     */
+    public static long start() {
+        return CURRENT.get() == null ? 0 : System.nanoTime();
+    }
+
+    public static void stop(String phase, long started) {
+        RequestDiagnostics diagnostics = CURRENT.get();
+        if (diagnostics != null && started != 0) {
+            diagnostics.add(phase, System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Like {@link #start()}, for code that runs before {@link DiagnosticsFilter}: returns 0 unless the
+     * request asked for diagnostics.
+     */
+    public static long start(HttpServletRequest request) {
+        return request.getHeader(DiagnosticsFilter.HEADER) == null ? 0 : System.nanoTime();
+    }
+
+    public static void stop(HttpServletRequest request, String phase, long started) {
+        if (started == 0) {
+            return;
+        }
+        EarlyPhases early = (EarlyPhases) request.getAttribute(EARLY_PHASES);
+        if (early == null) {
+            early = new EarlyPhases(started);
+            request.setAttribute(EARLY_PHASES, early);
+        }
+        early.phases.merge(phase, System.nanoTime() - started, Long::sum);
+    }
+
+    static void statementExecuted(long nanos, long updated) {
+        RequestDiagnostics diagnostics = CURRENT.get();
+        if (diagnostics != null) {
+            diagnostics.add("db", nanos);
+            diagnostics.rowsUpdated += updated;
+        }
+    }
+
+    static void statementPrepared() {
+        RequestDiagnostics diagnostics = CURRENT.get();
+        if (diagnostics != null) {
+            diagnostics.statements++;
+        }
+    }
+
+    static void rowFetched() {
+        RequestDiagnostics diagnostics = CURRENT.get();
+        if (diagnostics != null) {
+            diagnostics.rowsFetched++;
+        }
+    }
+
+    /**
+     * Formats the phases as a Server-Timing header value, in the order they were first recorded.
+     */
+    String serverTiming() {
+        StringJoiner header = new StringJoiner(", ");
+        header.add(entry("total", System.nanoTime() - startedNanos));
+        reportedPhases().forEach((phase, nanos) -> header.add(entry(phase, nanos)
+                + (phase.equals("db") ? ";desc=\"" + statements + " statements, " + rowsFetched + " rows fetched, "
+                + rowsUpdated + " rows updated\"" : "")));
+        return header.toString();
+    }
+
+    /**
+     * Formats the phases and JDBC counts as space-separated key=value pairs for the log.
+     */
+    String logLine() {
+        StringJoiner line = new StringJoiner(" ");
+        line.add("total=" + millis(System.nanoTime() - startedNanos));
+        reportedPhases().forEach((phase, nanos) -> line.add(phase + "=" + millis(nanos)));
+        line.add("statements=" + statements).add("rowsFetched=" + rowsFetched).add("rowsUpdated=" + rowsUpdated);
+        return line.toString();
+    }
+
+    // The handler span includes writing the response body, which is reported as serialization instead
+    private Map<String, Long> reportedPhases() {
+        Map<String, Long> reported = new LinkedHashMap<>();
+        phases.forEach((phase, total) -> reported.put(phase, total[0]));
+        reported.computeIfPresent("handler", (phase, nanos) -> nanos - reported.getOrDefault("serialization", 0L));
+        return reported;
+    }
+
+    private void add(String phase, long nanos) {
+        phases.computeIfAbsent(phase, p -> new long[1])[0] += nanos;
+    }
+
+    private static String entry(String phase, long nanos) {
+        return phase + ";dur=" + millis(nanos);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static final class EarlyPhases {
+
+        private final long startedNanos;
+        private final Map<String, Long> phases = new LinkedHashMap<>();
+
+        private EarlyPhases(long startedNanos) {
+            this.startedNanos = startedNanos;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ecommerce.metrics;
+
+/**
+ * Counts the JDBC statements the current thread prepares between {@link #start()} and {@link #stop()}.
+ * Statements run by background threads (cart flusher, checkout workers, stock combiner) are not
+ * attributed to any request.
+ */
+public final class StatementCounter {
+
+    private static final ThreadLocal<long[]> COUNT = new ThreadLocal<>();
+
+    private StatementCounter() {
+    }
+
+    public static void start() {
+        COUNT.set(new long[1]);
+    }
+
+    public static long stop() {
+        long[] count = COUNT.get();
+        COUNT.remove();
+        return count == null ? 0 : count[0];
+    }
+
+    static void increment() {
+        long[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.ecommerce.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Wraps the application data source so that every statement prepared through it, by Hibernate or
+ * by JdbcTemplate, is reported to {@link StatementCounter}. For requests with diagnostics on, the
+ * statements and their result sets are wrapped as well, to time executions and count rows for
+ * {@link RequestDiagnostics}; other requests get the driver's statements unchanged.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    private static final Set<String> STATEMENT_FACTORIES = Set.of("prepareStatement", "prepareCall", "createStatement");
+
+    public StatementCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return counting(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return counting(super.getConnection(username, password));
+    }
+
+    private static Connection counting(Connection connection) {
+        return proxy(Connection.class, (proxy, method, args) -> {
+            if (!STATEMENT_FACTORIES.contains(method.getName())) {
+                return invoke(connection, method, args);
+            }
+            StatementCounter.increment();
+            Object statement = invoke(connection, method, args);
+            if (!RequestDiagnostics.isActive()) {
+                return statement;
+            }
+            RequestDiagnostics.statementPrepared();
+            return proxy(method.getReturnType(), new DiagnosticStatement((Statement) statement));
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private record DiagnosticStatement(Statement statement) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute")) {
+                Object result = StatementCountingDataSource.invoke(statement, method, args);
+                return result instanceof ResultSet resultSet ? counting(resultSet) : result;
+            }
+            long started = System.nanoTime();
+            Object result = StatementCountingDataSource.invoke(statement, method, args);
+            long elapsed = System.nanoTime() - started;
+            long updated = 0;
+            if (result instanceof Integer count && count > 0) {
+                updated = count;
+            } else if (result instanceof Long count && count > 0) {
+                updated = count;
+            } else if (result instanceof int[] counts) {
+                for (int count : counts) {
+                    updated += Math.max(count, 0);
+                }
+            } else if (result instanceof long[] counts) {
+                for (long count : counts) {
+                    updated += Math.max(count, 0);
+                }
+            }
+            RequestDiagnostics.statementExecuted(elapsed, updated);
+            return result instanceof ResultSet resultSet ? counting(resultSet) : result;
+        }
+
+        private static ResultSet counting(ResultSet resultSet) {
+            return proxy(ResultSet.class, (proxy, method, args) -> {
+                Object result = StatementCountingDataSource.invoke(resultSet, method, args);
+                if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                    RequestDiagnostics.rowFetched();
+                }
+                return result;
+            });
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.ecommerce.money;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * An amount of money held as a long count of minor units (cents) plus its currency.
+ *
+ * Arithmetic works on the long directly, so summing order lines or cart totals does not create
+ * intermediate BigDecimals. Amounts are stored as DECIMAL columns by {@link MoneyConverter} and
+ * written to JSON as plain decimal numbers, exactly as the BigDecimal fields they replace.
+ */
+@JsonSerialize(using = MoneyJson.Serializer.class)
+@JsonDeserialize(using = MoneyJson.Deserializer.class)
+public record Money(long amountMinor, Currency currency) implements Comparable<Money> {
+
+    public static final Currency DEFAULT_CURRENCY = Currency.getInstance("USD");
+    public static final Money ZERO = new Money(0, DEFAULT_CURRENCY);
+
+    public static Money ofMinor(long amountMinor) {
+        return new Money(amountMinor, DEFAULT_CURRENCY);
+    }
+
+    /**
+     * Converts a decimal amount in the default currency, rounding half up to whole minor units.
+     */
+    public static Money of(BigDecimal amount) {
+        return ofMinor(toMinorUnits(amount));
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(DEFAULT_CURRENCY.getDefaultFractionDigits(), RoundingMode.HALF_UP)
+                .unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromMinorUnits(long amountMinor) {
+        return BigDecimal.valueOf(amountMinor, DEFAULT_CURRENCY.getDefaultFractionDigits());
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(amountMinor, other.amountMinor), currency);
+    }
+
+    public Money times(int quantity) {
+        return new Money(Math.multiplyExact(amountMinor, quantity), currency);
+    }
+
+    public boolean isPositive() {
+        return amountMinor > 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(amountMinor, currency.getDefaultFractionDigits());
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(amountMinor, other.amountMinor);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + other.currency);
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package com.ecommerce.repository;
 
 import com.ecommerce.entity.Cart;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.Optional;
 
 public interface CartRepository extends JpaRepository<Cart, Long> {
-    Optional<Cart> findByUserId(Long userId);
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    Optional<Cart> findWithItemsByUserId(Long userId);
+
+    @Query("SELECT c.version FROM Cart c WHERE c.user.id = :userId")
+    Optional<Long> findVersionByUserId(@Param("userId") Long userId);
 }
@@ -4,7 +4,6 @@ import com.ecommerce.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
 import java.util.List;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
     List<Product> findByActiveTrue();
-    List<Product> findByCategory(String category);
 }
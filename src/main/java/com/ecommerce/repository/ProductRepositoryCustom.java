@@ -0,0 +1,20 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.dto.response.ProductSummary;
+import com.ecommerce.money.Money;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+public interface ProductRepositoryCustom {
+
+    /**
+     * Pages through active products matching the filter, selecting only the summary columns.
+     */
+    Page<ProductSummary> findSummaries(ProductFilter filter, Pageable pageable);
+
+    /**
+     * Listing filters; null values are not applied.
+     */
+    record ProductFilter(String category, Money minPrice, Money maxPrice, Integer minStock) {
+    }
+}
@@ -0,0 +1,68 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.dto.response.ProductSummary;
+import com.ecommerce.entity.Product;
+import com.ecommerce.money.Money;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the listing query from only the filters that are set, so each variant is a plain
+ * conjunction the products indexes can serve, rather than one query full of "param is null or" terms.
+ */
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<ProductSummary> findSummaries(ProductFilter filter, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductSummary> query = cb.createQuery(ProductSummary.class);
+        Root<Product> product = query.from(Product.class);
+        query.select(cb.construct(ProductSummary.class, product.get("id"), product.get("name"),
+                        product.get("price"), product.get("stock"), product.get("category")))
+                .where(predicates(cb, product, filter))
+                .orderBy(QueryUtils.toOrders(pageable.getSort(), product, cb));
+
+        List<ProductSummary> content = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(filter));
+    }
+
+    private long count(ProductFilter filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Product> product = query.from(Product.class);
+        query.select(cb.count(product)).where(predicates(cb, product, filter));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private static Predicate[] predicates(CriteriaBuilder cb, Root<Product> product, ProductFilter filter) {
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.isTrue(product.get("active")));
+        if (filter.category() != null) {
+            predicates.add(cb.equal(product.get("category"), filter.category()));
+        }
+        if (filter.minPrice() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(product.<Money>get("price"), filter.minPrice()));
+        }
+        if (filter.maxPrice() != null) {
+            predicates.add(cb.lessThanOrEqualTo(product.<Money>get("price"), filter.maxPrice()));
+        }
+        if (filter.minStock() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(product.get("stock"), filter.minStock()));
+        }
+        return predicates.toArray(Predicate[]::new);
+    }
+}
@@ -0,0 +1,316 @@
+package com.ecommerce.search;
+
+import com.ecommerce.entity.Product;
+import com.ecommerce.exception.ServiceUnavailableException;
+import com.ecommerce.money.Money;
+import com.ecommerce.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory inverted index over the name, description and category of active products.
+ *
+ * Query terms are matched as prefixes of indexed terms and every term must match (AND). Documents
+ * are ranked with BM25 over a weighted bag of words, where a name term counts more than a category
+ * term and a category term more than a description term; prefix expansions score lower than exact
+ * matches. Every expansion of a prefix is considered, so a short prefix never silently drops documents
+ * whose term happens to sort late. Category and price-range facets are counted over all matches, each ignoring its own
+ * filter so clients can offer the other values as alternatives.
+ *
+ * The index is built in parallel once the application is ready and then kept current by
+ * {@link com.ecommerce.service.ProductService}. Changes made while a rebuild runs are journaled and
+ * replayed onto the new index before it is swapped in.
+ */
+@Slf4j
+@Component
+public class ProductSearchIndex {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final float NAME_WEIGHT = 3f;
+    private static final float CATEGORY_WEIGHT = 2f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    private static final double PREFIX_WEIGHT = 0.5;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ProductRepository productRepository;
+    private final long[] priceBoundsMinor;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+    private List<Consumer<Index>> journal;
+    private boolean ready;
+
+    public ProductSearchIndex(ProductRepository productRepository,
+                              @Value("${app.search.price-ranges:25,50,100,250,500,1000}") List<BigDecimal> priceBounds) {
+        this.productRepository = productRepository;
+        this.priceBoundsMinor = priceBounds.stream().mapToLong(Money::toMinorUnits).sorted().toArray();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            journal = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Index rebuilt = new Index();
+        boolean built = false;
+        try {
+            // Tokenizing is the expensive part and runs in parallel; the postings are merged on this thread
+            List<Document> documents = productRepository.findByActiveTrue().parallelStream()
+                    .map(ProductSearchIndex::document)
+                    .collect(Collectors.toList());
+            documents.forEach(rebuilt::put);
+            built = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (built) {
+                    journal.forEach(change -> change.accept(rebuilt));
+                    index = rebuilt;
+                    ready = true;
+                }
+                journal = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("Product search index built: {} products, {} terms in {} ms", rebuilt.documents.size(),
+                rebuilt.postings.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Adds or replaces a product; inactive products are removed.
+     */
+    public void index(Product product) {
+        if (!Boolean.TRUE.equals(product.getActive())) {
+            remove(product.getId());
+            return;
+        }
+        Document document = document(product);
+        change(current -> current.put(document));
+    }
+
+    public void remove(Long productId) {
+        change(current -> current.remove(productId));
+    }
+
+    public Result search(Query query) {
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                throw new ServiceUnavailableException("Product search index is being built, please retry shortly");
+            }
+            return index.search(query, priceBoundsMinor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void change(Consumer<Index> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(index);
+            if (journal != null) {
+                journal.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT)))
+                .filter(token -> !token.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private static Document document(Product product) {
+        Map<String, Float> terms = new HashMap<>();
+        float length = addTerms(terms, product.getName(), NAME_WEIGHT)
+                + addTerms(terms, product.getCategory(), CATEGORY_WEIGHT)
+                + addTerms(terms, product.getDescription(), DESCRIPTION_WEIGHT);
+        return new Document(product.getId(), product.getName(), product.getCategory(),
+                product.getPrice().amountMinor(), length, terms);
+    }
+
+    private static float addTerms(Map<String, Float> terms, String text, float weight) {
+        List<String> tokens = tokenize(text);
+        tokens.forEach(token -> terms.merge(token, weight, Float::sum));
+        return tokens.size() * weight;
+    }
+
+    /**
+     * A search request; null filters match everything.
+     */
+    public record Query(String text, String category, Long minPriceMinor, Long maxPriceMinor, int offset, int limit) {
+    }
+
+    public record Result(List<Long> productIds, int total, Map<String, Integer> categories, List<PriceRange> priceRanges) {
+    }
+
+    /**
+     * Products priced from {@code fromMinor} (inclusive) to {@code toMinor} (exclusive, null for no bound).
+     */
+    public record PriceRange(long fromMinor, Long toMinor, int count) {
+    }
+
+    private record Document(Long id, String name, String category, long priceMinor, float length, Map<String, Float> terms) {
+    }
+
+    private record Hit(Document document, double score) {
+    }
+
+    /**
+     * Documents plus postings. Not thread-safe; guarded by the enclosing index's lock.
+     */
+    private static final class Index {
+
+        private final Map<Long, Document> documents = new HashMap<>();
+        // Sorted so that prefix queries are a range scan
+        private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+        private double totalLength;
+
+        void put(Document document) {
+            remove(document.id());
+            documents.put(document.id(), document);
+            totalLength += document.length();
+            document.terms().forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(document.id(), frequency));
+        }
+
+        void remove(Long id) {
+            Document document = documents.remove(id);
+            if (document == null) {
+                return;
+            }
+            totalLength -= document.length();
+            for (String term : document.terms().keySet()) {
+                Map<Long, Float> posting = postings.get(term);
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+
+        Result search(Query query, long[] priceBounds) {
+            Collection<Hit> matches = match(tokenize(query.text()));
+
+            Map<String, Integer> categories = new TreeMap<>();
+            int[] priceCounts = new int[priceBounds.length + 1];
+            List<Hit> hits = new ArrayList<>();
+            for (Hit hit : matches) {
+                Document document = hit.document();
+                boolean inCategory = query.category() == null || query.category().equalsIgnoreCase(document.category());
+                boolean inPrice = (query.minPriceMinor() == null || document.priceMinor() >= query.minPriceMinor())
+                        && (query.maxPriceMinor() == null || document.priceMinor() <= query.maxPriceMinor());
+                if (inPrice && document.category() != null) {
+                    categories.merge(document.category(), 1, Integer::sum);
+                }
+                if (inCategory) {
+                    priceCounts[priceBucket(document.priceMinor(), priceBounds)]++;
+                }
+                if (inCategory && inPrice) {
+                    hits.add(hit);
+                }
+            }
+
+            List<PriceRange> priceRanges = new ArrayList<>(priceCounts.length);
+            for (int i = 0; i < priceCounts.length; i++) {
+                priceRanges.add(new PriceRange(i == 0 ? 0 : priceBounds[i - 1],
+                        i < priceBounds.length ? priceBounds[i] : null, priceCounts[i]));
+            }
+            return new Result(top(hits, query.offset(), query.limit()), hits.size(), categories, priceRanges);
+        }
+
+        private Collection<Hit> match(List<String> tokens) {
+            if (tokens.isEmpty()) {
+                return documents.values().stream().map(document -> new Hit(document, 0)).collect(Collectors.toList());
+            }
+            Map<Long, Double> scores = null;
+            for (String token : tokens) {
+                Map<Long, Double> tokenScores = score(token);
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    scores.replaceAll((id, score) -> score + tokenScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            return scores.entrySet().stream()
+                    .map(entry -> new Hit(documents.get(entry.getKey()), entry.getValue()))
+                    .collect(Collectors.toList());
+        }
+
+        // BM25 score per document for one query token, taking the best of its prefix expansions
+        private Map<Long, Double> score(String token) {
+            Map<Long, Double> scores = new HashMap<>();
+            double averageLength = totalLength / documents.size();
+            for (Map.Entry<String, Map<Long, Float>> entry
+                    : postings.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+                Map<Long, Float> posting = entry.getValue();
+                double idf = Math.log(1 + (documents.size() - posting.size() + 0.5) / (posting.size() + 0.5));
+                double weight = entry.getKey().equals(token) ? 1 : PREFIX_WEIGHT;
+                posting.forEach((id, frequency) -> {
+                    double norm = K1 * (1 - B + B * documents.get(id).length() / averageLength);
+                    double score = weight * idf * frequency * (K1 + 1) / (frequency + norm);
+                    scores.merge(id, score, Math::max);
+                });
+            }
+            return scores;
+        }
+
+        private static List<Long> top(List<Hit> hits, int offset, int limit) {
+            Comparator<Hit> ranking = Comparator.comparingDouble(Hit::score).reversed()
+                    .thenComparing(hit -> hit.document().name(), Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                    .thenComparing(hit -> hit.document().id());
+            // Only the first offset + limit hits need ordering
+            PriorityQueue<Hit> best = new PriorityQueue<>(ranking.reversed());
+            int keep = offset + limit;
+            for (Hit hit : hits) {
+                best.add(hit);
+                if (best.size() > keep) {
+                    best.poll();
+                }
+            }
+            List<Hit> ordered = new ArrayList<>(best);
+            ordered.sort(ranking);
+            return ordered.stream().skip(offset).map(hit -> hit.document().id()).collect(Collectors.toList());
+        }
+
+        private static int priceBucket(long priceMinor, long[] bounds) {
+            int index = Arrays.binarySearch(bounds, priceMinor);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+    }
+}
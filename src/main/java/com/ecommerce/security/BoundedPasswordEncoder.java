@@ -0,0 +1,139 @@
+package com.ecommerce.security;
+
+import com.ecommerce.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt encoder that hashes on its own small thread pool instead of the calling request thread.
+ *
+ * The pool has a fixed number of threads and a bounded queue, so a burst of logins or registrations
+ * can use at most that many cores and tie up at most threads + queue-capacity request threads; any
+ * further attempt is rejected at once with a 503 rather than queueing behind the others and starving
+ * cart and checkout traffic.
+ *
+ * Unless a cost is configured, the BCrypt cost is calibrated at startup as the highest cost whose
+ * hash still fits the target latency on this machine. Hashes stored with a different cost report
+ * {@link #upgradeEncoding}, which makes the authentication provider rehash the password on the next
+ * successful login. Instances sharing a database should configure the same fixed cost, or users would
+ * be rehashed back and forth between them.
+ */
+@Slf4j
+@Component
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    private final int cost;
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(MeterRegistry meterRegistry,
+                                  @Value("${app.security.password-hashing.threads:0}") int threads,
+                                  @Value("${app.security.password-hashing.queue-capacity:32}") int queueCapacity,
+                                  @Value("${app.security.password-hashing.cost:0}") int fixedCost,
+                                  @Value("${app.security.password-hashing.target-latency:100ms}") Duration targetLatency,
+                                  @Value("${app.security.password-hashing.min-cost:10}") int minCost,
+                                  @Value("${app.security.password-hashing.max-cost:14}") int maxCost) {
+        this.cost = fixedCost > 0 ? fixedCost : calibrate(targetLatency, minCost, maxCost);
+        this.encoder = new BCryptPasswordEncoder(cost);
+
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+            Thread thread = new Thread(task, "password-hashing-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        new ExecutorServiceMetrics(executor, "password.hashing", Tags.empty()).bindTo(meterRegistry);
+        Gauge.builder("password.hashing.cost", () -> cost).register(meterRegistry);
+        this.rejected = meterRegistry.counter("password.hashing.rejected");
+        log.info("Password hashing: BCrypt cost {}, {} threads, queue capacity {}", cost, poolSize, queueCapacity);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return hash(() -> encoder.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return hash(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * True when the hash was made with a different cost than the current one. Not reported while the
+     * queue is full, so an upgrade does not turn a successful login into a rejection.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || executor.getQueue().remainingCapacity() == 0) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != cost;
+    }
+
+    private <T> T hash(Callable<T> task) {
+        Future<T> result;
+        try {
+            result = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceUnavailableException("Too many sign-in attempts in progress, please retry shortly");
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Password check was interrupted, please retry");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Each cost step doubles the work, so one timed hash at the minimum cost predicts the others
+    private static int calibrate(Duration targetLatency, int minCost, int maxCost) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(minCost);
+        probe.encode(CALIBRATION_PASSWORD);
+        long started = System.nanoTime();
+        probe.encode(CALIBRATION_PASSWORD);
+        long measured = System.nanoTime() - started;
+
+        int cost = minCost;
+        for (long nanos = measured * 2; cost < maxCost && nanos <= targetLatency.toNanos(); nanos *= 2) {
+            cost++;
+        }
+        log.info("Calibrated BCrypt cost {} for a target of {} ms (cost {} took {} ms)", cost,
+                targetLatency.toMillis(), minCost, measured / 1_000_000);
+        return cost;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,74 @@
+package com.ecommerce.security;
+
+import com.ecommerce.cache.StripedLoader;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.function.Function;
+
+/**
+ * Authenticated principals keyed by token subject. An entry never outlives the token it was loaded
+ * for, nor the configured maximum TTL, and is dropped whenever the underlying user row changes.
+ */
+@Component
+public class PrincipalCache {
+
+    private final Cache<String, Entry> principals;
+    private final StripedLoader<String, Entry> loads;
+
+    public PrincipalCache(@Value("${app.security.principal-cache.max-size:10000}") long maxSize,
+                          @Value("${app.security.principal-cache.ttl:5m}") Duration ttl) {
+        long maxNanos = ttl.toNanos();
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String subject, Entry entry, long currentTime) {
+                        long remaining = Duration.ofMillis(entry.expiresAt() - System.currentTimeMillis()).toNanos();
+                        return Math.max(0, Math.min(remaining, maxNanos));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String subject, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(subject, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String subject, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        this.loads = new StripedLoader<>(principals);
+    }
+
+    public AuthenticatedUser get(String subject, Date tokenExpiration, Function<String, AuthenticatedUser> loader) {
+        return loads.get(subject, key -> {
+            AuthenticatedUser user = loader.apply(key);
+            user.eraseCredentials();
+            return new Entry(user, tokenExpiration.getTime());
+        }).user();
+    }
+
+    public void invalidate(String subject) {
+        loads.invalidate(subject);
+    }
+
+    public CacheStats stats() {
+        return principals.stats();
+    }
+
+    public long size() {
+        return principals.estimatedSize();
+    }
+
+    private record Entry(AuthenticatedUser user, long expiresAt) {
+    }
+}
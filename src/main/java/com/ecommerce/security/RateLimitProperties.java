@@ -0,0 +1,25 @@
+package com.ecommerce.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Per-route request limits, bound from app.rate-limit.*. The first route whose pattern (and method,
+ * if given) matches a request applies; requests matching no route are not limited.
+ */
+@ConfigurationProperties("app.rate-limit")
+public record RateLimitProperties(@DefaultValue("true") boolean enabled,
+                                  @DefaultValue("10m") Duration idleTimeout,
+                                  @DefaultValue("100000") long maxBuckets,
+                                  @DefaultValue List<Route> routes) {
+
+    /**
+     * Allows {@code requests} per {@code period} on average, and bursts of up to {@code burst}
+     * requests (defaults to {@code requests}).
+     */
+    public record Route(String pattern, String method, int requests, Duration period, Integer burst) {
+    }
+}
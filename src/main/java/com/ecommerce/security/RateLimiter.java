@@ -0,0 +1,91 @@
+package com.ecommerce.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets per route and client, implemented as the generic cell rate algorithm: each bucket is
+ * a single {@link AtomicLong} holding the time at which it will be full again, advanced by one
+ * emission interval per admitted request with a compare-and-set, so admission is lock-free.
+ *
+ * Buckets not used for the idle timeout are evicted. As long as the timeout is longer than a bucket
+ * takes to refill, an evicted bucket was full anyway and eviction never changes a decision.
+ */
+@Component
+public class RateLimiter {
+
+    private final List<Limit> limits = new ArrayList<>();
+    private final Cache<BucketKey, AtomicLong> buckets;
+
+    public RateLimiter(RateLimitProperties properties) {
+        List<RateLimitProperties.Route> routes = properties.routes();
+        for (int i = 0; i < routes.size(); i++) {
+            RateLimitProperties.Route route = routes.get(i);
+            if (route.requests() <= 0 || route.period() == null || route.period().isNegative() || route.period().isZero()) {
+                throw new IllegalArgumentException("Rate limit for " + route.pattern() + " needs positive requests and period");
+            }
+            long interval = route.period().toNanos() / route.requests();
+            int burst = route.burst() != null ? route.burst() : route.requests();
+            limits.add(new Limit(i, route.pattern(), PathPatternParser.defaultInstance.parse(route.pattern()),
+                    route.method(), interval, interval * (Math.max(burst, 1) - 1)));
+        }
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(properties.idleTimeout())
+                .maximumSize(properties.maxBuckets())
+                .build();
+    }
+
+    /**
+     * The first limit matching the request, or null if the request is not limited.
+     */
+    public Limit match(String method, String path) {
+        if (limits.isEmpty()) {
+            return null;
+        }
+        PathContainer container = PathContainer.parsePath(path);
+        for (Limit limit : limits) {
+            if ((limit.method() == null || limit.method().equalsIgnoreCase(method)) && limit.pathPattern().matches(container)) {
+                return limit;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes a token from the client's bucket for the limit. Returns 0 when the request is admitted,
+     * otherwise the nanoseconds until it would be.
+     */
+    public long acquire(Limit limit, String client, long nowNanos) {
+        AtomicLong full = buckets.get(new BucketKey(limit.index(), client), key -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long current = full.get();
+            long start = Math.max(current, nowNanos);
+            long wait = start - limit.toleranceNanos() - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (full.compareAndSet(current, start + limit.intervalNanos())) {
+                return 0;
+            }
+        }
+    }
+
+    public long bucketCount() {
+        return buckets.estimatedSize();
+    }
+
+    public record Limit(int index, String pattern, PathPattern pathPattern, String method,
+                        long intervalNanos, long toleranceNanos) {
+    }
+
+    private record BucketKey(int limit, String client) {
+    }
+}
@@ -0,0 +1,213 @@
+package com.ecommerce.security;
+
+import com.ecommerce.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter over the email addresses of registered users, so lookups for addresses that were never
+ * registered, such as credential-stuffing attempts, are answered without a query.
+ *
+ * {@link #mightContain} never returns false for an email registered through this instance; it returns
+ * true for a small, configurable fraction of unregistered ones. Bits are only ever set, with a CAS per
+ * word, so additions need no lock. The filter is filled in parallel from the users table once the
+ * application is ready and answers "maybe" until then; users saved at any time are added by
+ * {@link RegisteredEmailListener}. Removed users and changed addresses stay in the filter, which
+ * only costs a query.
+ *
+ * Users registered through other instances are not seen by the listener. The filter is therefore
+ * rebuilt from the table every rebuild-interval, and until then a login may still check a negative
+ * against the database once per email every recheck-interval (see {@link #allowRecheck}) and
+ * {@link #add} what it finds. The filter is consulted only by login and registration; principals of
+ * already issued tokens are always loaded from the database.
+ */
+@Slf4j
+@Component
+public class RegisteredEmailFilter implements DisposableBean {
+
+    private final UserRepository userRepository;
+    private final int wordCount;
+    private final long bitCount;
+    private final int hashCount;
+    // Emails whose negative was checked against the database within the recheck interval
+    private final Cache<String, Boolean> rechecked;
+    private final Counter skippedLookups;
+    private final ScheduledExecutorService rebuilder;
+    private volatile Bits bits;
+    // Filled next to bits while a rebuild runs, so additions made meanwhile are not lost by the swap
+    private volatile Bits building;
+
+    public RegisteredEmailFilter(@Lazy UserRepository userRepository, MeterRegistry meterRegistry,
+                                 @Value("${app.security.email-filter.capacity:1000000}") long capacity,
+                                 @Value("${app.security.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                                 @Value("${app.security.email-filter.rebuild-interval:10m}") Duration rebuildInterval,
+                                 @Value("${app.security.email-filter.recheck-interval:1m}") Duration recheckInterval) {
+        this.userRepository = userRepository;
+        // Optimal size and hash count for the capacity: m = -n ln p / (ln 2)^2, k = m / n ln 2
+        long size = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.wordCount = Math.toIntExact((size + 63) / 64);
+        this.bitCount = wordCount * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+        this.rechecked = Caffeine.newBuilder()
+                .maximumSize(capacity)
+                .expireAfterWrite(recheckInterval)
+                .build();
+
+        Gauge.builder("email.filter.fill.ratio", this, RegisteredEmailFilter::fillRatio).register(meterRegistry);
+        Gauge.builder("email.filter.false.positive.rate", this, filter -> Math.pow(filter.fillRatio(), filter.hashCount))
+                .register(meterRegistry);
+        this.skippedLookups = meterRegistry.counter("email.filter.skipped.lookups");
+
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "email-filter-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = rebuildInterval.toMillis();
+        rebuilder.scheduleWithFixedDelay(this::rebuild, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long started = System.nanoTime();
+        Bits rebuilt = new Bits(wordCount);
+        building = rebuilt;
+        List<String> emails;
+        try {
+            emails = userRepository.findAllEmails();
+            emails.parallelStream().forEach(email -> set(rebuilt, email));
+            bits = rebuilt;
+        } finally {
+            building = null;
+        }
+        log.info("Registered email filter built: {} emails, {} bits, {} hashes, fill ratio {} in {} ms", emails.size(),
+                bitCount, hashCount, String.format(Locale.ROOT, "%.4f", fillRatio()), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * False only if no user registered with this email is known here; the caller may then skip the
+     * lookup.
+     */
+    public boolean mightContain(String email) {
+        Bits current = bits;
+        if (current == null || email == null) {
+            return true;
+        }
+        long hash = hash(email);
+        long step = mix(hash) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash + i * step, bitCount);
+            if ((current.words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                skippedLookups.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether a negative answer for this email may be checked against the database anyway, at most
+     * once per recheck-interval, so users registered on another instance can sign in before the next
+     * rebuild. Each email has its own budget, so repeated attempts for one unregistered address never
+     * hold back anyone else's; the overall volume is bounded by the rate limit on the auth routes.
+     */
+    public boolean allowRecheck(String email) {
+        return rechecked.asMap().putIfAbsent(email, Boolean.TRUE) == null;
+    }
+
+    public void add(String email) {
+        Bits current = bits;
+        if (current != null) {
+            set(current, email);
+        }
+        Bits next = building;
+        if (next != null) {
+            set(next, email);
+        }
+    }
+
+    private void rebuild() {
+        try {
+            build();
+        } catch (RuntimeException e) {
+            log.error("Failed to rebuild the registered email filter, keeping the current one", e);
+        }
+    }
+
+    private void set(Bits target, String email) {
+        long hash = hash(email);
+        long step = mix(hash) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash + i * step, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = target.words.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!target.words.compareAndSet(index, word, word | mask));
+            if ((word & mask) == 0) {
+                target.setBits.increment();
+            }
+        }
+    }
+
+    private double fillRatio() {
+        Bits current = bits;
+        return current == null ? 0 : current.setBits.doubleValue() / bitCount;
+    }
+
+    @Override
+    public void destroy() {
+        rebuilder.shutdownNow();
+    }
+    // FNV-1a over the characters, mixed so all bits depend on the input; the double-hashing step is
+    // derived from it with a second mix
+    private static long hash(String email) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < email.length(); i++) {
+            hash = (hash ^ email.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class Bits {
+
+        private final AtomicLongArray words;
+        private final LongAdder setBits = new LongAdder();
+
+        private Bits(int wordCount) {
+            this.words = new AtomicLongArray(wordCount);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.ecommerce.security;
+
+import com.ecommerce.entity.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adds the email of every saved user to the {@link RegisteredEmailFilter}. Kept apart from the filter
+ * because Hibernate creates its own instance of each entity listener.
+ */
+@Component
+@RequiredArgsConstructor
+public class RegisteredEmailListener {
+
+    private final RegisteredEmailFilter registeredEmails;
+
+    @PostPersist
+    @PostUpdate
+    public void added(User user) {
+        registeredEmails.add(user.getEmail());
+    }
+}
@@ -7,7 +7,9 @@ import com.ecommerce.enums.Role;
 import com.ecommerce.exception.BadRequestException;
 import com.ecommerce.repository.*;
 import com.ecommerce.security.JwtService;
+import com.ecommerce.security.RegisteredEmailFilter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.*;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -21,9 +23,11 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
     private final AuthenticationManager authManager;
+    private final CartService cartService;
+    private final RegisteredEmailFilter registeredEmails;
 
     public AuthResponse register(RegisterRequest request) {
-        if (userRepository.existsByEmail(request.getEmail())) {
+        if (registeredEmails.mightContain(request.getEmail()) && userRepository.existsByEmail(request.getEmail())) {
             throw new BadRequestException("Email already registered");
         }
 
@@ -33,7 +37,12 @@ public class AuthService {
                 .fullName(request.getFullName())
                 .role(Role.ROLE_USER)
                 .build();
-        userRepository.save(user);
+        try {
+            userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            // Registered concurrently, or through an instance whose users this filter has not seen yet
+            throw new BadRequestException("Email already registered");
+        }
 
         // Create empty cart for user
         cartRepository.save(Cart.builder().user(user).build());
@@ -48,8 +57,22 @@ public class AuthService {
     }
 
     public AuthResponse login(LoginRequest request) {
+        boolean known = registeredEmails.mightContain(request.getEmail());
+        // No registered user can have a password shorter than registration allows, so such a miss is
+        // answered without spending the email's recheck
+        if (!known && (request.getPassword().length() < RegisterRequest.MIN_PASSWORD_LENGTH
+                || !registeredEmails.allowRecheck(request.getEmail()))) {
+            throw new BadCredentialsException("Bad credentials");
+        }
         authManager.authenticate(new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword()));
         User user = userRepository.findByEmail(request.getEmail()).orElseThrow();
+        if (!known) {
+            // Registered through another instance since the last rebuild
+            registeredEmails.add(user.getEmail());
+        }
+        if (request.getGuestCart() != null && !request.getGuestCart().isEmpty()) {
+            cartService.mergeGuestCart(user.getId(), request.getGuestCart());
+        }
         String token = jwtService.generateToken(user.getEmail());
         return AuthResponse.builder()
                 .token(token)
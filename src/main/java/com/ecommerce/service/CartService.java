@@ -1,124 +1,222 @@
 package com.ecommerce.service;
 
+import com.ecommerce.cache.CartStore;
+import com.ecommerce.cache.CartStore.CartDelta;
+import com.ecommerce.cache.CartStore.CartSnapshot;
+import com.ecommerce.cache.ProductCatalogCache;
 import com.ecommerce.dto.request.CartItemRequest;
+import com.ecommerce.dto.request.CartOperationRequest;
+import com.ecommerce.dto.response.CartDeltaResponse;
 import com.ecommerce.dto.response.CartResponse;
 import com.ecommerce.entity.*;
+import com.ecommerce.enums.CartAction;
 import com.ecommerce.exception.*;
-import com.ecommerce.repository.*;
+import com.ecommerce.money.Money;
+import com.ecommerce.security.CurrentUserProvider;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Cart operations work on the in-memory {@link CartStore}; product details for responses come from
+ * the catalog cache, so a cart change normally runs without any database query.
+ */
 @Service
 @RequiredArgsConstructor
 public class CartService {
 
-    private final CartRepository cartRepository;
-    private final CartItemRepository cartItemRepository;
-    private final ProductRepository productRepository;
-    private final UserRepository userRepository;
+    private final CartStore cartStore;
+    private final ProductCatalogCache catalogCache;
+    private final CurrentUserProvider currentUserProvider;
+    private final MeterRegistry meterRegistry;
 
     public CartResponse getCart() {
-        Cart cart = getCurrentUserCart();
-        return mapToCartResponse(cart);
+        return toResponse(cartStore.get(currentUserProvider.getUserId()));
+    }
+
+    public Optional<Long> getCartVersion() {
+        return cartStore.version(currentUserProvider.getUserId());
+    }
+
+    public CartDeltaResponse getCartChanges(long since) {
+        CartDelta delta = cartStore.changesSince(currentUserProvider.getUserId(), since);
+        CartResponse cart = toResponse(delta.cart());
+        Map<Long, CartResponse.CartItemResponse> itemsByProduct = cart.getItems().stream()
+                .collect(Collectors.toMap(CartResponse.CartItemResponse::getProductId, Function.identity()));
+        return CartDeltaResponse.builder()
+                .id(cart.getId())
+                .version(cart.getVersion())
+                .full(delta.full())
+                .items(delta.changed().stream()
+                        .map(line -> itemsByProduct.get(line.productId()))
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList()))
+                .removedProductIds(delta.removedProductIds())
+                .totalAmount(cart.getTotalAmount())
+                .totalItems(cart.getTotalItems())
+                .build();
     }
 
-    @Transactional
     public CartResponse addToCart(CartItemRequest request) {
-        Cart cart = getCurrentUserCart();
-        Product product = productRepository.findById(request.getProductId())
+        return timed("add", () -> add(request));
+    }
+
+    public CartResponse updateCartItem(Long itemId, Integer quantity) {
+        return timed("update", () -> setQuantity(itemId, quantity));
+    }
+
+    public CartResponse removeFromCart(Long itemId) {
+        return timed("remove", () -> setQuantity(itemId, 0));
+    }
+
+    public CartResponse applyOperations(List<CartOperationRequest> operations) {
+        return timed("bulk", () -> apply(currentUserProvider.getUserId(), operations, false));
+    }
+
+    /**
+     * Merges the items a user collected before signing in. Unlike the bulk endpoint, products that no
+     * longer exist or are inactive are skipped and quantities are capped at the available stock, so a stale guest
+     * cart never fails the login.
+     */
+    public void mergeGuestCart(Long userId, List<CartItemRequest> items) {
+        timed("merge", () -> apply(userId, items.stream()
+                .map(item -> new CartOperationRequest(CartAction.ADD, item.getProductId(), item.getQuantity()))
+                .collect(Collectors.toList()), true));
+    }
+
+    public void clearCart() {
+        timed("clear", () -> cartStore.update(currentUserProvider.getUserId(), CartStore.CartState::clear));
+    }
+
+    private <T> T timed(String operation, Supplier<T> mutation) {
+        return meterRegistry.timer("cart.operation", "operation", operation).record(mutation);
+    }
+
+    private CartResponse add(CartItemRequest request) {
+        Product product = catalogCache.get(request.getProductId())
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
 
         if (product.getStock() < request.getQuantity()) {
-            throw new BadRequestException("Insufficient stock");
+            throw new InsufficientStockException("Insufficient stock");
         }
 
-        var existingItem = cartItemRepository.findByCartIdAndProductId(cart.getId(), product.getId());
-        if (existingItem.isPresent()) {
-            CartItem item = existingItem.get();
-            item.setQuantity(item.getQuantity() + request.getQuantity());
-            cartItemRepository.save(item);
-        } else {
-            CartItem item = CartItem.builder()
-                    .cart(cart)
-                    .product(product)
-                    .quantity(request.getQuantity())
-                    .build();
-            cart.getItems().add(item);
-            cartItemRepository.save(item);
-        }
+        return toResponse(cartStore.update(currentUserProvider.getUserId(), cart -> {
+            Integer current = cart.quantity(product.getId());
+            cart.set(product.getId(), (current == null ? 0 : current) + request.getQuantity(), product.getPrice().amountMinor());
+        }));
+    }
 
-        return mapToCartResponse(cartRepository.findById(cart.getId()).orElseThrow());
+    private CartResponse setQuantity(Long itemId, Integer quantity) {
+        return toResponse(cartStore.update(currentUserProvider.getUserId(), cart -> {
+            Long productId = cart.productIdOf(itemId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Item not found in cart"));
+            if (quantity <= 0) {
+                cart.set(productId, 0, 0);
+                return;
+            }
+            Product product = catalogCache.get(productId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+            if (product.getStock() < quantity) {
+                throw new InsufficientStockException("Insufficient stock");
+            }
+            cart.set(productId, quantity, product.getPrice().amountMinor());
+        }));
     }
 
-    @Transactional
-    public CartResponse updateCartItem(Long itemId, Integer quantity) {
-        Cart cart = getCurrentUserCart();
-        CartItem item = cart.getItems().stream()
-                .filter(i -> i.getId().equals(itemId))
-                .findFirst()
-                .orElseThrow(() -> new ResourceNotFoundException("Item not found in cart"));
-
-        if (quantity <= 0) {
-            cart.getItems().remove(item);
-            cartItemRepository.delete(item);
-        } else {
-            if (item.getProduct().getStock() < quantity) {
-                throw new BadRequestException("Insufficient stock");
+    /**
+     * Applies all operations to the cart as one change. Products are loaded once for the whole
+     * request and every resulting quantity is validated before the cart is touched, so either all
+     * operations apply or none do.
+     */
+    private CartResponse apply(Long userId, List<CartOperationRequest> operations, boolean lenient) {
+        for (CartOperationRequest operation : operations) {
+            if (operation.getAction() != CartAction.REMOVE && operation.getQuantity() == null) {
+                throw new BadRequestException("Quantity is required for " + operation.getAction());
             }
-            item.setQuantity(quantity);
-            cartItemRepository.save(item);
         }
 
-        return mapToCartResponse(cartRepository.findById(cart.getId()).orElseThrow());
-    }
+        List<Long> productIds = operations.stream()
+                .map(CartOperationRequest::getProductId)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, Product> products = catalogCache.getAll(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        if (!lenient && products.size() < productIds.size()) {
+            List<Long> missing = productIds.stream().filter(id -> !products.containsKey(id)).collect(Collectors.toList());
+            throw new ResourceNotFoundException("Product not found: " + missing);
+        }
 
-    @Transactional
-    public CartResponse removeFromCart(Long itemId) {
-        return updateCartItem(itemId, 0);
-    }
+        return toResponse(cartStore.update(userId, cart -> {
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            for (CartOperationRequest operation : operations) {
+                Long productId = operation.getProductId();
+                if (!products.containsKey(productId) || (lenient && !Boolean.TRUE.equals(products.get(productId).getActive()))) {
+                    continue;
+                }
+                int current = quantities.containsKey(productId)
+                        ? quantities.get(productId)
+                        : Objects.requireNonNullElse(cart.quantity(productId), 0);
+                quantities.put(productId, switch (operation.getAction()) {
+                    case ADD -> current + operation.getQuantity();
+                    case SET -> operation.getQuantity();
+                    case REMOVE -> 0;
+                });
+            }
 
-    @Transactional
-    public void clearCart() {
-        Cart cart = getCurrentUserCart();
-        cart.getItems().clear();
-        cartRepository.save(cart);
+            for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                Product product = products.get(entry.getKey());
+                if (entry.getValue() > product.getStock()) {
+                    if (!lenient) {
+                        throw new InsufficientStockException("Insufficient stock for: " + product.getName());
+                    }
+                    entry.setValue(product.getStock());
+                }
+            }
+            quantities.forEach((productId, quantity) ->
+                    cart.set(productId, quantity, products.get(productId).getPrice().amountMinor()));
+        }));
     }
 
-    private Cart getCurrentUserCart() {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        return cartRepository.findByUserId(user.getId())
-                .orElseGet(() -> cartRepository.save(Cart.builder().user(user).build()));
+    private CartResponse toResponse(CartSnapshot cart) {
+        Map<Long, Product> products = catalogCache.getAll(cart.lines().stream()
+                        .map(CartSnapshot.Line::productId)
+                        .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return mapToCartResponse(cart, products);
     }
 
-    private CartResponse mapToCartResponse(Cart cart) {
-        var items = cart.getItems().stream().map(item -> {
-            BigDecimal subtotal = item.getProduct().getPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
-            return CartResponse.CartItemResponse.builder()
-                    .id(item.getId())
-                    .productId(item.getProduct().getId())
-                    .productName(item.getProduct().getName())
-                    .price(item.getProduct().getPrice())
-                    .quantity(item.getQuantity())
-                    .subtotal(subtotal)
-                    .build();
-        }).collect(Collectors.toList());
-
-        BigDecimal total = items.stream()
-                .map(CartResponse.CartItemResponse::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * Prices and totals come from the amounts the store keeps per line; the catalog only supplies
+     * product names, so building a response does no arithmetic beyond a multiply per line.
+     */
+    static CartResponse mapToCartResponse(CartSnapshot cart, Map<Long, Product> products) {
+        var items = cart.lines().stream()
+                .filter(line -> products.containsKey(line.productId()))
+                .map(line -> CartResponse.CartItemResponse.builder()
+                        .id(line.itemId())
+                        .productId(line.productId())
+                        .productName(products.get(line.productId()).getName())
+                        .price(Money.ofMinor(line.unitPriceMinor()))
+                        .quantity(line.quantity())
+                        .subtotal(Money.ofMinor(line.unitPriceMinor() * line.quantity()))
+                        .build())
+                .collect(Collectors.toList());
 
         return CartResponse.builder()
-                .id(cart.getId())
+                .id(cart.cartId())
+                .version(cart.version())
                 .items(items)
-                .totalAmount(total)
-                .totalItems(cart.getItems().size())
+                .totalAmount(Money.ofMinor(cart.totalMinor()))
+                .totalItems(cart.lines().size())
                 .build();
     }
 }
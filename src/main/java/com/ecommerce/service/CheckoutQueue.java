@@ -0,0 +1,188 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.ServiceUnavailableException;
+import com.ecommerce.enums.OrderStatus;
+import com.ecommerce.repository.OrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded in-process queue of PENDING orders waiting for stock confirmation.
+ *
+ * A slot is claimed inside the checkout transaction, so a full queue rejects the checkout before
+ * anything is committed. The order id is handed to the workers only once that transaction commits;
+ * on rollback the slot is given back. Workers drain up to batch-size ids at a time and confirm them
+ * together in one transaction.
+ *
+ * If a batch fails, its orders are retried one at a time with exponential backoff, so one bad order
+ * or a transient lock timeout cannot strand the rest. An order that still cannot be confirmed after
+ * max-attempts is cancelled with a reason. Orders left PENDING by a shutdown or crash are queued
+ * again once the application is ready; confirmation locks and re-checks every order, so an order
+ * queued by more than one instance is still confirmed only once.
+ */
+@Slf4j
+@Component
+public class CheckoutQueue implements DisposableBean {
+
+    private final OrderConfirmationService confirmationService;
+    private final OrderRepository orderRepository;
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final Semaphore slots;
+    private final BlockingQueue<Long> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService workers;
+
+    public CheckoutQueue(OrderConfirmationService confirmationService,
+                         OrderRepository orderRepository,
+                         @Value("${app.checkout.async.enabled:false}") boolean enabled,
+                         @Value("${app.checkout.async.capacity:1000}") int capacity,
+                         @Value("${app.checkout.async.workers:2}") int workerCount,
+                         @Value("${app.checkout.async.batch-size:50}") int batchSize,
+                         @Value("${app.checkout.async.max-attempts:3}") int maxAttempts,
+                         @Value("${app.checkout.async.retry-backoff:200ms}") Duration retryBackoff) {
+        this.confirmationService = confirmationService;
+        this.orderRepository = orderRepository;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = retryBackoff.toMillis();
+        this.slots = new Semaphore(capacity);
+        if (!enabled) {
+            this.workers = null;
+            return;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, task -> {
+            Thread thread = new Thread(task, "checkout-worker-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Claims a queue slot for the order and schedules it for confirmation once the current
+     * transaction commits. Throws when the queue is full, which rolls the checkout back.
+     */
+    public void submitAfterCommit(Long orderId) {
+        if (!slots.tryAcquire()) {
+            throw new ServiceUnavailableException("Checkout queue is full, please retry shortly");
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    queue.add(orderId);
+                } else {
+                    slots.release();
+                }
+            }
+        });
+    }
+
+    public int depth() {
+        return capacity - slots.availablePermits();
+    }
+
+    /**
+     * Queues the orders still PENDING in the database, as left by a previous run. Runs on its own
+     * thread because more orders may be pending than the queue has slots.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverPending() {
+        if (!enabled) {
+            return;
+        }
+        List<Long> pending = orderRepository.findIdsByStatus(OrderStatus.PENDING);
+        if (pending.isEmpty()) {
+            return;
+        }
+        log.info("Re-queueing {} PENDING orders", pending.size());
+        Thread recovery = new Thread(() -> {
+            try {
+                for (Long orderId : pending) {
+                    slots.acquire();
+                    queue.add(orderId);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "checkout-recovery");
+        recovery.setDaemon(true);
+        recovery.start();
+    }
+
+    private void work() {
+        List<Long> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                try {
+                    confirmationService.confirm(batch);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to confirm orders {}, retrying them one by one", batch, e);
+                    for (Long orderId : batch) {
+                        confirmWithRetry(orderId);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                slots.release(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void confirmWithRetry(Long orderId) throws InterruptedException {
+        RuntimeException failure = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                confirmationService.confirm(List.of(orderId));
+                return;
+            } catch (RuntimeException e) {
+                failure = e;
+                if (attempt < maxAttempts) {
+                    Thread.sleep(retryBackoffMillis << (attempt - 1));
+                }
+            }
+        }
+        log.error("Could not confirm order {} after {} attempts, cancelling it", orderId, maxAttempts, failure);
+        try {
+            confirmationService.cancel(orderId, "Order could not be confirmed, please place it again");
+        } catch (RuntimeException e) {
+            log.error("Failed to cancel order {}, it stays PENDING until the next restart", orderId, e);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (workers != null) {
+            workers.shutdownNow();
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.request.CheckoutRequest;
+import com.ecommerce.dto.response.OrderResponse;
+import com.ecommerce.entity.IdempotencyRecord;
+import com.ecommerce.exception.BadRequestException;
+import com.ecommerce.exception.ConflictException;
+import com.ecommerce.repository.IdempotencyRecordRepository;
+import com.ecommerce.security.CurrentUserProvider;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Runs a checkout at most once per Idempotency-Key.
+ *
+ * Keys are scoped to the calling user. Completed results are kept in a bounded in-memory store and,
+ * when app.idempotency.persistent is set, also in the idempotency_records table. A retry with a
+ * completed key replays the stored response without touching the database; a retry arriving while the
+ * first execution is still running waits for its outcome.
+ *
+ * In persistent mode the key is claimed with a pending record, committed on its own before the
+ * checkout runs, and the response is filled in afterwards in another transaction. The checkout itself
+ * runs outside both, so it commits (and can group-commit) exactly as it would without a key. When two
+ * instances run the same key at once, the one that loses on the unique key never starts the checkout:
+ * it replays the winner's response, or gets a conflict while the winner is still running. Failed
+ * executions release their claim, so the client can retry them.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final CurrentUserProvider currentUserProvider;
+    private final IdempotencyRecordRepository recordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean persistent;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final Cache<String, Completed> completed;
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(CurrentUserProvider currentUserProvider,
+                              IdempotencyRecordRepository recordRepository,
+                              PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              @Value("${app.idempotency.persistent:false}") boolean persistent,
+                              @Value("${app.idempotency.max-size:100000}") long maxSize,
+                              @Value("${app.idempotency.ttl:24h}") Duration ttl,
+                              @Value("${app.idempotency.wait-timeout:30s}") Duration waitTimeout) {
+        this.currentUserProvider = currentUserProvider;
+        this.recordRepository = recordRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.objectMapper = objectMapper;
+        this.persistent = persistent;
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public OrderResponse checkout(String idempotencyKey, CheckoutRequest request, Supplier<OrderResponse> action) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        String key = currentUserProvider.getUserId() + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request);
+
+        // A pending claim may belong to an execution on this instance, which the retry then waits for
+        Completed done = findCompleted(key);
+        if (done != null && done.response() != null) {
+            return replay(done, fingerprint);
+        }
+
+        InFlight mine = new InFlight(fingerprint, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return await(running, fingerprint);
+        }
+
+        try {
+            // The first execution may have finished between the lookup above and claiming the key
+            done = completed.getIfPresent(key);
+            if (done != null) {
+                mine.result().complete(done.response());
+                return replay(done, fingerprint);
+            }
+
+            IdempotencyRecord claim = null;
+            if (persistent) {
+                try {
+                    claim = transactionTemplate.execute(status -> claim(key, fingerprint));
+                } catch (DataIntegrityViolationException e) {
+                    // Another instance holds the same key; this checkout never starts
+                    done = findCompleted(key);
+                    if (done == null) {
+                        throw e;
+                    }
+                    OrderResponse response = replay(done, fingerprint);
+                    mine.result().complete(response);
+                    return response;
+                }
+            }
+
+            OrderResponse response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                if (claim != null) {
+                    release(claim);
+                }
+                throw e;
+            }
+            completed.put(key, new Completed(fingerprint, response));
+            mine.result().complete(response);
+            if (claim != null) {
+                claim.setResponse(write(response));
+                IdempotencyRecord completedClaim = claim;
+                transactionTemplate.executeWithoutResult(status -> recordRepository.save(completedClaim));
+            }
+            return response;
+        } catch (RuntimeException e) {
+            mine.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Completed findCompleted(String key) {
+        Completed done = completed.getIfPresent(key);
+        if (done != null || !persistent) {
+            return done;
+        }
+        Optional<IdempotencyRecord> record = recordRepository.findByIdempotencyKey(key);
+        if (record.isEmpty()) {
+            return null;
+        }
+        if (record.get().getCreatedAt().isBefore(LocalDateTime.now().minus(ttl))) {
+            recordRepository.delete(record.get());
+            return null;
+        }
+        if (record.get().getResponse() == null) {
+            // Claimed but not completed yet
+            return new Completed(record.get().getFingerprint(), null);
+        }
+        done = new Completed(record.get().getFingerprint(), read(record.get().getResponse()));
+        completed.put(key, done);
+        return done;
+    }
+
+    private IdempotencyRecord claim(String key, String fingerprint) {
+        return recordRepository.saveAndFlush(IdempotencyRecord.builder()
+                .idempotencyKey(key)
+                .fingerprint(fingerprint)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    private void release(IdempotencyRecord claim) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> recordRepository.deleteById(claim.getId()));
+        } catch (RuntimeException e) {
+            // The claim stays pending until it expires; the checkout's own failure is what the client sees
+            log.warn("Could not release Idempotency-Key claim {}", claim.getIdempotencyKey(), e);
+        }
+    }
+
+    private OrderResponse await(InFlight running, String fingerprint) {
+        checkFingerprint(running.fingerprint(), fingerprint);
+        try {
+            return running.result().get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ConflictException("A request with this Idempotency-Key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("A request with this Idempotency-Key is still in progress");
+        }
+    }
+
+    private OrderResponse replay(Completed done, String fingerprint) {
+        checkFingerprint(done.fingerprint(), fingerprint);
+        if (done.response() == null) {
+            throw new ConflictException("A request with this Idempotency-Key is still in progress");
+        }
+        return done.response();
+    }
+
+    private void checkFingerprint(String stored, String fingerprint) {
+        if (!stored.equals(fingerprint)) {
+            throw new BadRequestException("Idempotency-Key was already used for a different request");
+        }
+    }
+
+    private String fingerprint(CheckoutRequest request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(write(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private OrderResponse read(String json) {
+        try {
+            return objectMapper.readValue(json, OrderResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Completed(String fingerprint, OrderResponse response) {
+    }
+
+    private record InFlight(String fingerprint, CompletableFuture<OrderResponse> result) {
+    }
+}
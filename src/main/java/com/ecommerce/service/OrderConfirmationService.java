@@ -0,0 +1,70 @@
+package com.ecommerce.service;
+
+import com.ecommerce.entity.Order;
+import com.ecommerce.enums.OrderStatus;
+import com.ecommerce.metrics.CheckoutMetrics;
+import com.ecommerce.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Confirms a batch of queued orders in one transaction. Orders are locked and re-checked first, so an
+ * order cancelled while it waited in the queue is skipped. Orders whose stock cannot be reserved are
+ * cancelled with a reason instead of failing the whole batch; stock is handed out in queue order.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderConfirmationService {
+
+    private final OrderRepository orderRepository;
+    private final StockReservationService stockReservationService;
+    private final CheckoutMetrics checkoutMetrics;
+
+    @Transactional
+    public void confirm(List<Long> orderIds) {
+        List<Order> orders = orderRepository.findForUpdateByIdInAndStatus(orderIds, OrderStatus.PENDING);
+        if (orders.isEmpty()) {
+            return;
+        }
+
+        List<Map<Long, Integer>> requests = orders.stream()
+                .map(order -> OrderService.quantities(order.getItems()))
+                .collect(Collectors.toList());
+        List<Long> shortfalls = stockReservationService.allocate(requests);
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            Long shortOf = shortfalls.get(i);
+            if (shortOf == null) {
+                order.setStatus(OrderStatus.CONFIRMED);
+                checkoutMetrics.count(CheckoutMetrics.SUCCESS);
+            } else {
+                order.setStatus(OrderStatus.CANCELLED);
+                order.setStatusReason("Insufficient stock for: " + stockReservationService.productName(shortOf));
+                checkoutMetrics.count(CheckoutMetrics.INSUFFICIENT_STOCK);
+            }
+            order.setUpdatedAt(now);
+        }
+    }
+
+    /**
+     * Cancels an order that could not be confirmed. A PENDING order holds no stock, so nothing is
+     * released; an order confirmed or cancelled in the meantime is left alone.
+     */
+    @Transactional
+    public void cancel(Long orderId, String reason) {
+        for (Order order : orderRepository.findForUpdateByIdInAndStatus(List.of(orderId), OrderStatus.PENDING)) {
+            order.setStatus(OrderStatus.CANCELLED);
+            order.setStatusReason(reason);
+            order.setUpdatedAt(LocalDateTime.now());
+            checkoutMetrics.count(CheckoutMetrics.ERROR);
+        }
+    }
+}
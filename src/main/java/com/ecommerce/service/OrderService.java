@@ -1,62 +1,120 @@
 package com.ecommerce.service;
 
+import com.ecommerce.cache.CartStore;
 import com.ecommerce.dto.request.CheckoutRequest;
+import com.ecommerce.dto.response.OrderPageResponse;
 import com.ecommerce.dto.response.OrderResponse;
+import com.ecommerce.dto.response.OrderStatusResponse;
 import com.ecommerce.entity.*;
 import com.ecommerce.enums.OrderStatus;
 import com.ecommerce.exception.*;
+import com.ecommerce.metrics.CheckoutMetrics;
+import com.ecommerce.money.Money;
 import com.ecommerce.repository.*;
+import com.ecommerce.security.CurrentUserProvider;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class OrderService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final OrderRepository orderRepository;
     private final CartRepository cartRepository;
-    private final ProductRepository productRepository;
-    private final UserRepository userRepository;
+    private final CurrentUserProvider currentUserProvider;
+    private final StockReservationService stockReservationService;
+    private final CheckoutQueue checkoutQueue;
+    private final StockCombiner stockCombiner;
+    private final TransactionTemplate transactionTemplate;
+    private final CartStore cartStore;
+    private final CheckoutMetrics checkoutMetrics;
 
-    @Transactional
     public OrderResponse checkout(CheckoutRequest request) {
-        User user = getCurrentUser();
-        Cart cart = cartRepository.findByUserId(user.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Cart not found"));
+        Timer.Sample sample = checkoutMetrics.start();
+        String outcome = CheckoutMetrics.ERROR;
+        try {
+            OrderResponse response = placeCheckout(request);
+            outcome = response.getStatus() == OrderStatus.PENDING ? CheckoutMetrics.ACCEPTED : CheckoutMetrics.SUCCESS;
+            return response;
+        } catch (InsufficientStockException e) {
+            outcome = CheckoutMetrics.INSUFFICIENT_STOCK;
+            throw e;
+        } catch (EmptyCartException e) {
+            outcome = CheckoutMetrics.EMPTY_CART;
+            throw e;
+        } catch (BadRequestException | ResourceNotFoundException | ServiceUnavailableException e) {
+            outcome = CheckoutMetrics.REJECTED;
+            throw e;
+        } finally {
+            checkoutMetrics.record(sample, outcome);
+        }
+    }
 
-        if (cart.getItems().isEmpty()) {
-            throw new BadRequestException("Cart is empty");
+    private OrderResponse placeCheckout(CheckoutRequest request) {
+        // The order is built from the persisted cart, so pending cart changes are written first
+        cartStore.flush(currentUserProvider.getUserId());
+
+        if (!stockCombiner.isEnabled() || checkoutQueue.isEnabled()
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transactionTemplate.execute(status -> placeOrder(request, null));
         }
 
-        // Calculate total and validate stock
-        BigDecimal total = BigDecimal.ZERO;
-        for (CartItem item : cart.getItems()) {
-            Product product = item.getProduct();
-            if (product.getStock() < item.getQuantity()) {
-                throw new BadRequestException("Insufficient stock for: " + product.getName());
+        // Group commit: stock is reserved by the combiner before the order transaction takes a
+        // connection, and handed back if the order cannot be placed
+        Map<Long, Integer> reserved = transactionTemplate.execute(status -> cartQuantities(loadCart().getItems()));
+        stockCombiner.reserve(reserved);
+        try {
+            return transactionTemplate.execute(status -> placeOrder(request, reserved));
+        } catch (RuntimeException e) {
+            transactionTemplate.executeWithoutResult(status -> stockReservationService.release(reserved));
+            throw e;
+        }
+    }
+
+    private OrderResponse placeOrder(CheckoutRequest request, Map<Long, Integer> reserved) {
+        User user = currentUserProvider.getUser();
+        Cart cart = loadCart();
+
+        // Calculate total and, unless stock is confirmed later by the checkout queue, reserve it now
+        Money total = calculateTotal(cart.getItems());
+        boolean async = checkoutQueue.isEnabled();
+        if (reserved != null) {
+            if (!reserved.equals(cartQuantities(cart.getItems()))) {
+                throw new BadRequestException("Cart changed during checkout, please retry");
             }
-            total = total.add(product.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+        } else if (!async) {
+            stockReservationService.reserve(cartQuantities(cart.getItems()));
         }
 
         // Create order
         Order order = Order.builder()
                 .user(user)
                 .totalAmount(total)
-                .status(OrderStatus.CONFIRMED)
+                .status(async ? OrderStatus.PENDING : OrderStatus.CONFIRMED)
                 .shippingAddress(request.getShippingAddress())
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
                 .build();
-        orderRepository.save(order);
 
-        // Create order items and update stock
+        // Create order items, persisted together with the order as one insert batch
         for (CartItem cartItem : cart.getItems()) {
             Product product = cartItem.getProduct();
             OrderItem orderItem = OrderItem.builder()
@@ -66,31 +124,72 @@ public class OrderService {
                     .price(product.getPrice())
                     .build();
             order.getItems().add(orderItem);
-
-            // Reduce stock
-            product.setStock(product.getStock() - cartItem.getQuantity());
-            productRepository.save(product);
         }
         orderRepository.save(order);
+        if (async) {
+            checkoutQueue.submitAfterCommit(order.getId());
+        }
 
         // Clear cart
+        Map<Long, Integer> ordered = cartQuantities(cart.getItems());
         cart.getItems().clear();
+        cart.setVersion(cart.getVersion() + 1);
         cartRepository.save(cart);
+        cartStore.checkedOutAfterCommit(user.getId(), ordered, cart.getVersion());
 
         return mapToOrderResponse(order);
     }
 
-    public List<OrderResponse> getOrderHistory() {
-        User user = getCurrentUser();
-        return orderRepository.findByUserIdOrderByCreatedAtDesc(user.getId())
-                .stream()
-                .map(this::mapToOrderResponse)
-                .collect(Collectors.toList());
+    private Cart loadCart() {
+        Cart cart = cartRepository.findWithItemsByUserId(currentUserProvider.getUserId())
+                .orElseThrow(() -> new ResourceNotFoundException("Cart not found"));
+        if (cart.getItems().isEmpty()) {
+            throw new EmptyCartException();
+        }
+        return cart;
+    }
+
+    private static Map<Long, Integer> cartQuantities(List<CartItem> items) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (CartItem item : items) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    public OrderPageResponse getOrderHistory(String cursor, Integer size) {
+        User user = currentUserProvider.getUser();
+        int limit = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        // One extra row tells us whether another page exists
+        Pageable window = PageRequest.of(0, limit + 1);
+
+        List<Long> ids;
+        if (cursor == null || cursor.isBlank()) {
+            ids = orderRepository.findPageIds(user.getId(), window);
+        } else {
+            OrderCursor position = decodeCursor(cursor);
+            ids = orderRepository.findPageIdsAfter(user.getId(), position.createdAt(), position.id(), window);
+        }
+
+        boolean hasMore = ids.size() > limit;
+        if (hasMore) {
+            ids = ids.subList(0, limit);
+        }
+
+        Map<Long, Order> ordersById = orderRepository.findWithItemsByIdIn(ids).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        List<Order> orders = ids.stream().map(ordersById::get).collect(Collectors.toList());
+
+        return OrderPageResponse.builder()
+                .orders(orders.stream().map(this::mapToOrderResponse).collect(Collectors.toList()))
+                .nextCursor(hasMore ? encodeCursor(orders.get(orders.size() - 1)) : null)
+                .hasMore(hasMore)
+                .build();
     }
 
     public OrderResponse getOrderById(Long orderId) {
-        User user = getCurrentUser();
-        Order order = orderRepository.findById(orderId)
+        User user = currentUserProvider.getUser();
+        Order order = orderRepository.findWithItemsById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
         if (!order.getUser().getId().equals(user.getId())) {
             throw new BadRequestException("Order does not belong to user");
@@ -98,10 +197,26 @@ public class OrderService {
         return mapToOrderResponse(order);
     }
 
+    public OrderStatusResponse getOrderStatus(Long orderId) {
+        User user = currentUserProvider.getUser();
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
+        if (!order.getUser().getId().equals(user.getId())) {
+            throw new BadRequestException("Order does not belong to user");
+        }
+        return OrderStatusResponse.builder()
+                .orderId(order.getId())
+                .status(order.getStatus())
+                .statusReason(order.getStatusReason())
+                .updatedAt(order.getUpdatedAt())
+                .build();
+    }
+
     @Transactional
     public OrderResponse cancelOrder(Long orderId) {
-        User user = getCurrentUser();
-        Order order = orderRepository.findById(orderId)
+        User user = currentUserProvider.getUser();
+        // Locked so a checkout worker cannot confirm the order while it is being cancelled
+        Order order = orderRepository.findForUpdateById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
 
         if (!order.getUser().getId().equals(user.getId())) {
@@ -112,11 +227,9 @@ public class OrderService {
             throw new BadRequestException("Order cannot be cancelled");
         }
 
-        // Restore stock
-        for (OrderItem item : order.getItems()) {
-            Product product = item.getProduct();
-            product.setStock(product.getStock() + item.getQuantity());
-            productRepository.save(product);
+        // Restore stock; a PENDING order has not reserved any yet
+        if (order.getStatus() == OrderStatus.CONFIRMED) {
+            stockReservationService.release(quantities(order.getItems()));
         }
 
         order.setStatus(OrderStatus.CANCELLED);
@@ -126,23 +239,45 @@ public class OrderService {
         return mapToOrderResponse(order);
     }
 
-    private User getCurrentUser() {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        return userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    static Map<Long, Integer> quantities(List<OrderItem> items) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (OrderItem item : items) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    static Money calculateTotal(List<CartItem> items) {
+        long total = 0;
+        for (CartItem item : items) {
+            total = Math.addExact(total, Math.multiplyExact(item.getProduct().getPrice().amountMinor(), item.getQuantity()));
+        }
+        return Money.ofMinor(total);
+    }
+
+    private String encodeCursor(Order order) {
+        String position = order.getCreatedAt() + "|" + order.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private OrderCursor decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = position.split("\\|");
+            return new OrderCursor(LocalDateTime.parse(parts[0]), Long.valueOf(parts[1]));
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
     }
 
     private OrderResponse mapToOrderResponse(Order order) {
-        var items = order.getItems().stream().map(item -> {
-            BigDecimal subtotal = item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
-            return OrderResponse.OrderItemResponse.builder()
-                    .productId(item.getProduct().getId())
-                    .productName(item.getProduct().getName())
-                    .quantity(item.getQuantity())
-                    .price(item.getPrice())
-                    .subtotal(subtotal)
-                    .build();
-        }).collect(Collectors.toList());
+        var items = order.getItems().stream().map(item -> OrderResponse.OrderItemResponse.builder()
+                .productId(item.getProduct().getId())
+                .productName(item.getProduct().getName())
+                .quantity(item.getQuantity())
+                .price(item.getPrice())
+                .subtotal(item.getPrice().times(item.getQuantity()))
+                .build()).collect(Collectors.toList());
 
         return OrderResponse.builder()
                 .id(order.getId())
@@ -153,4 +288,7 @@ public class OrderService {
                 .createdAt(order.getCreatedAt())
                 .build();
     }
+
+    private record OrderCursor(LocalDateTime createdAt, Long id) {
+    }
 }
@@ -1,60 +1,197 @@
 package com.ecommerce.service;
 
+import com.ecommerce.cache.CartStore;
+import com.ecommerce.cache.ProductCatalogCache;
 import com.ecommerce.dto.request.ProductRequest;
+import com.ecommerce.dto.response.ProductPageResponse;
+import com.ecommerce.dto.response.ProductSearchResponse;
+import com.ecommerce.dto.response.ProductSummary;
 import com.ecommerce.entity.Product;
+import com.ecommerce.exception.BadRequestException;
 import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.money.Money;
 import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.ProductRepositoryCustom;
+import com.ecommerce.search.ProductSearchIndex;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
 
+    private static final Set<String> SORTABLE = Set.of("id", "name", "price", "stock");
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ProductRepository productRepository;
+    private final ProductCatalogCache catalogCache;
+    private final CartStore cartStore;
+    private final ProductSearchIndex searchIndex;
+
+    /**
+     * Lists active products one page at a time. Sort is "property" or "property,direction" on id, name,
+     * price or stock; ties are broken by id so pages are stable.
+     */
+    public ProductPageResponse getProducts(String category, BigDecimal minPrice, BigDecimal maxPrice, Integer minStock,
+                                           Integer page, Integer size, String sort) {
+        int pageNumber = page == null ? 0 : page;
+        int limit = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        if (pageNumber < 0) {
+            throw new BadRequestException("Page must not be negative");
+        }
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new BadRequestException("minPrice must not be greater than maxPrice");
+        }
 
-    public List<Product> getAllProducts() {
-        return productRepository.findByActiveTrue();
+        Page<ProductSummary> result = productRepository.findSummaries(new ProductRepositoryCustom.ProductFilter(
+                        category == null || category.isBlank() ? null : category,
+                        minPrice == null ? null : Money.ofMinor(priceFilter("minPrice", minPrice)),
+                        maxPrice == null ? null : Money.ofMinor(priceFilter("maxPrice", maxPrice)),
+                        minStock),
+                PageRequest.of(pageNumber, limit, parseSort(sort)));
+        return ProductPageResponse.builder()
+                .products(result.getContent())
+                .page(pageNumber)
+                .size(limit)
+                .totalElements(result.getTotalElements())
+                .totalPages(result.getTotalPages())
+                .build();
     }
 
     public Product getProductById(Long id) {
-        return productRepository.findById(id)
+        return catalogCache.get(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
     }
 
-    public List<Product> getProductsByCategory(String category) {
-        return productRepository.findByCategory(category);
+    public ProductSearchResponse search(String query, String category, BigDecimal minPrice, BigDecimal maxPrice,
+                                        Integer page, Integer size) {
+        int pageNumber = page == null ? 0 : page;
+        int limit = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        if (pageNumber < 0) {
+            throw new BadRequestException("Page must not be negative");
+        }
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new BadRequestException("minPrice must not be greater than maxPrice");
+        }
+        // The index ranks offset + limit hits, which must fit in an int
+        if ((long) pageNumber * limit > Integer.MAX_VALUE - limit) {
+            throw new BadRequestException("Page is out of range");
+        }
+
+        ProductSearchIndex.Result result = searchIndex.search(new ProductSearchIndex.Query(query,
+                category == null || category.isBlank() ? null : category,
+                minPrice == null ? null : priceFilter("minPrice", minPrice),
+                maxPrice == null ? null : priceFilter("maxPrice", maxPrice),
+                pageNumber * limit, limit));
+
+        Map<Long, Product> products = catalogCache.getAll(result.productIds()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return ProductSearchResponse.builder()
+                .products(result.productIds().stream()
+                        .map(products::get)
+                        .filter(product -> product != null && Boolean.TRUE.equals(product.getActive()))
+                        .collect(Collectors.toList()))
+                .total(result.total())
+                .page(pageNumber)
+                .size(limit)
+                .categories(result.categories().entrySet().stream()
+                        .map(entry -> new ProductSearchResponse.CategoryFacet(entry.getKey(), entry.getValue()))
+                        .collect(Collectors.toList()))
+                .priceRanges(result.priceRanges().stream()
+                        .map(range -> new ProductSearchResponse.PriceRangeFacet(Money.ofMinor(range.fromMinor()),
+                                range.toMinor() == null ? null : Money.ofMinor(range.toMinor()), range.count()))
+                        .collect(Collectors.toList()))
+                .build();
     }
 
     public Product createProduct(ProductRequest request) {
         Product product = Product.builder()
                 .name(request.getName())
                 .description(request.getDescription())
-                .price(request.getPrice())
+                .price(Money.of(request.getPrice()))
                 .stock(request.getStock())
                 .category(request.getCategory())
                 .imageUrl(request.getImageUrl())
                 .active(true)
                 .build();
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        catalogCache.invalidate(saved.getId());
+        searchIndex.index(saved);
+        return saved;
     }
 
     public Product updateProduct(Long id, ProductRequest request) {
-        Product product = getProductById(id);
+        Product product = loadProduct(id);
+        Money price = Money.of(request.getPrice());
+        // Price and name appear in cart responses, so carts holding the product get a new version
+        boolean visibleInCarts = !product.getPrice().equals(price) || !product.getName().equals(request.getName());
         product.setName(request.getName());
         product.setDescription(request.getDescription());
-        product.setPrice(request.getPrice());
+        product.setPrice(price);
         product.setStock(request.getStock());
         product.setCategory(request.getCategory());
         product.setImageUrl(request.getImageUrl());
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        catalogCache.invalidate(id);
+        searchIndex.index(saved);
+        if (visibleInCarts) {
+            cartStore.productChanged(id, saved.getPrice());
+        }
+        return saved;
     }
 
     public void deleteProduct(Long id) {
-        Product product = getProductById(id);
+        Product product = loadProduct(id);
+        boolean wasActive = Boolean.TRUE.equals(product.getActive());
         product.setActive(false);
         productRepository.save(product);
+        catalogCache.invalidate(id);
+        searchIndex.remove(id);
+        if (wasActive) {
+            cartStore.productChanged(id, product.getPrice());
+        }
+    }
+
+    // A price filter in minor units; amounts that do not fit are rejected rather than failing with a 500
+    private static long priceFilter(String name, BigDecimal amount) {
+        try {
+            return Money.toMinorUnits(amount);
+        } catch (ArithmeticException e) {
+            throw new BadRequestException(name + " is out of range");
+        }
+    }
+
+    private static Sort parseSort(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return Sort.by("id");
+        }
+        String[] parts = sort.split(",");
+        String property = parts[0].trim();
+        if (!SORTABLE.contains(property) || parts.length > 2) {
+            throw new BadRequestException("Unsupported sort: " + sort);
+        }
+        Sort.Direction direction;
+        try {
+            direction = parts.length == 2 ? Sort.Direction.fromString(parts[1].trim()) : Sort.Direction.ASC;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unsupported sort: " + sort);
+        }
+        return property.equals("id") ? Sort.by(direction, "id") : Sort.by(direction, property).and(Sort.by("id"));
+    }
+
+    // Writes always start from the database row, never from a shared cached copy
+    private Product loadProduct(Long id) {
+        return productRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
     }
 }
@@ -0,0 +1,181 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.InsufficientStockException;
+import com.ecommerce.exception.ServiceUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Group commit for stock reservations of synchronous checkouts.
+ *
+ * Concurrent checkouts hand their quantities to a single combiner thread instead of each updating the
+ * products rows in its own transaction. The combiner collects whatever arrives within a short window,
+ * allocates stock to the requests in arrival order and commits one aggregated decrement per product,
+ * so a flash-sale SKU costs one row update per batch rather than one per order.
+ *
+ * The reservation commits before the caller's order transaction starts. Callers must not hold a
+ * database connection while they wait here, and must release the stock if placing the order fails.
+ * A caller waits at most the configured timeout; stock allocated to a caller that already gave up is
+ * handed back by the combiner. Once the combiner stops, queued and new requests fail immediately.
+ */
+@Slf4j
+@Component
+public class StockCombiner implements DisposableBean {
+
+    private static final String STOPPED = "Stock reservations are unavailable, please retry shortly";
+
+    private final StockReservationService stockReservationService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final long timeoutNanos;
+    private final BlockingQueue<Request> pending = new LinkedBlockingQueue<>();
+    private final Thread combiner;
+    private volatile boolean stopped;
+
+    public StockCombiner(StockReservationService stockReservationService,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.checkout.group-commit.enabled:false}") boolean enabled,
+                         @Value("${app.checkout.group-commit.window:2ms}") Duration window,
+                         @Value("${app.checkout.group-commit.max-batch:256}") int maxBatch,
+                         @Value("${app.checkout.group-commit.timeout:5s}") Duration timeout) {
+        this.stockReservationService = stockReservationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.windowNanos = window.toNanos();
+        this.maxBatch = maxBatch;
+        this.timeoutNanos = timeout.toNanos();
+        if (enabled) {
+            this.combiner = new Thread(this::combine, "stock-combiner");
+            this.combiner.setDaemon(true);
+            this.combiner.start();
+        } else {
+            this.combiner = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reserves the quantities as part of the next batch and waits for it to commit. Fails with
+     * {@link ServiceUnavailableException} when the combiner is stopped or does not answer in time;
+     * nothing is reserved in that case.
+     */
+    public void reserve(Map<Long, Integer> quantities) {
+        if (stopped) {
+            throw new ServiceUnavailableException(STOPPED);
+        }
+        Request request = new Request(Map.copyOf(quantities), new CompletableFuture<>());
+        pending.add(request);
+        if (stopped) {
+            // The combiner may have drained the queue before this request was added
+            failPending();
+        }
+        Long shortOf;
+        try {
+            shortOf = request.result().get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            shortOf = abandon(request, "Stock reservation timed out, please retry shortly");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shortOf = abandon(request, "Stock reservation interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Stock reservation failed", e.getCause());
+        }
+        if (shortOf != null) {
+            throw new InsufficientStockException("Insufficient stock for: " + stockReservationService.productName(shortOf));
+        }
+    }
+
+    /**
+     * Gives up on a request. If the combiner completed it first its outcome stands, otherwise the
+     * combiner will find it done and either skip it or hand its stock back.
+     */
+    private Long abandon(Request request, String message) {
+        if (request.result().completeExceptionally(new ServiceUnavailableException(message))) {
+            throw new ServiceUnavailableException(message);
+        }
+        return request.result().getNow(null);
+    }
+
+    private void combine() {
+        List<Request> batch = new ArrayList<>(maxBatch);
+        try {
+            while (!stopped && !Thread.currentThread().isInterrupted()) {
+                batch.clear();
+                try {
+                    batch.add(pending.take());
+                    if (windowNanos > 0) {
+                        TimeUnit.NANOSECONDS.sleep(windowNanos);
+                    }
+                    pending.drainTo(batch, maxBatch - 1);
+                    // Callers that already gave up are not allocated anything
+                    batch.removeIf(request -> request.result().isDone());
+                    if (batch.isEmpty()) {
+                        continue;
+                    }
+                    List<Long> shortfalls = transactionTemplate.execute(status -> stockReservationService.allocate(
+                            batch.stream().map(Request::quantities).toList()));
+                    List<Map<Long, Integer>> abandoned = new ArrayList<>();
+                    for (int i = 0; i < batch.size(); i++) {
+                        Long shortOf = shortfalls.get(i);
+                        if (!batch.get(i).result().complete(shortOf) && shortOf == null) {
+                            abandoned.add(batch.get(i).quantities());
+                        }
+                    }
+                    if (!abandoned.isEmpty()) {
+                        transactionTemplate.executeWithoutResult(status -> abandoned.forEach(stockReservationService::release));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    log.error("Stock reservation batch of {} requests failed", batch.size(), e);
+                    batch.forEach(request -> request.result().completeExceptionally(e));
+                }
+            }
+        } finally {
+            // Also reached when the thread dies of an Error: no caller is left waiting on a dead combiner
+            stopped = true;
+            ServiceUnavailableException failure = new ServiceUnavailableException(STOPPED);
+            batch.forEach(request -> request.result().completeExceptionally(failure));
+            failPending();
+        }
+    }
+
+    private void failPending() {
+        ServiceUnavailableException failure = new ServiceUnavailableException(STOPPED);
+        Request request;
+        while ((request = pending.poll()) != null) {
+            request.result().completeExceptionally(failure);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        stopped = true;
+        if (combiner != null) {
+            combiner.interrupt();
+            combiner.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        failPending();
+    }
+
+    private record Request(Map<Long, Integer> quantities, CompletableFuture<Long> result) {
+    }
+}
@@ -0,0 +1,181 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cache.ProductCatalogCache;
+import com.ecommerce.entity.Product;
+import com.ecommerce.exception.InsufficientStockException;
+import com.ecommerce.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reserves and releases product stock for checkout and cancellation.
+ *
+ * Every change is a conditional UPDATE on the products row, so the database never lets stock go
+ * negative, and all rows of one reservation are sent as a single JDBC batch. On top of that,
+ * callers touching the same products are serialized in-process through a fixed set of lock stripes
+ * which are held until the surrounding transaction completes. Products are always processed in
+ * ascending id order and stripes are always taken in ascending index order, so multi-item carts
+ * cannot deadlock against each other.
+ */
+@Service
+@RequiredArgsConstructor
+public class StockReservationService {
+
+    private static final int STRIPES = 64;
+    private static final String DECREMENT_SQL = "UPDATE products SET stock = stock - ? WHERE id = ? AND stock >= ?";
+    private static final String INCREMENT_SQL = "UPDATE products SET stock = stock + ? WHERE id = ?";
+    private static final String SELECT_FOR_UPDATE_SQL = "SELECT id, stock FROM products WHERE id IN (%s) ORDER BY id FOR UPDATE";
+
+    private final ProductRepository productRepository;
+    private final ProductCatalogCache catalogCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final ReentrantLock[] stripes = createStripes();
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserve(Map<Long, Integer> quantities) {
+        SortedMap<Long, Integer> ordered = new TreeMap<>(quantities);
+        List<ReentrantLock> locks = lock(ordered.keySet());
+        try {
+            int[] updated = decrement(ordered);
+            catalogCache.evictAfterCommit(ordered.keySet());
+
+            // Drivers that cannot report per-row counts return SUCCESS_NO_INFO, only 0 means "not enough"
+            int i = 0;
+            for (Long productId : ordered.keySet()) {
+                if (updated[i++] == 0) {
+                    throw new InsufficientStockException("Insufficient stock for: " + productName(productId));
+                }
+            }
+        } finally {
+            unlockAfterCompletion(locks);
+        }
+    }
+
+    /**
+     * Reserves several independent requests in one pass, in list order. The rows are read once under
+     * row locks, stock is handed out to the requests in order, and each product then gets a single
+     * aggregated decrement. A request that cannot be fully covered gets nothing, without failing the
+     * others.
+     *
+     * @return for each request, {@code null} when it was reserved, otherwise the id of the first
+     *         product that did not have enough stock left
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Long> allocate(List<Map<Long, Integer>> requests) {
+        SortedSet<Long> productIds = new TreeSet<>();
+        requests.forEach(request -> productIds.addAll(request.keySet()));
+        List<ReentrantLock> locks = lock(productIds);
+        try {
+            Map<Long, Integer> available = new HashMap<>();
+            jdbcTemplate.query(String.format(SELECT_FOR_UPDATE_SQL, String.join(",", Collections.nCopies(productIds.size(), "?"))),
+                    rs -> {
+                        available.put(rs.getLong(1), rs.getInt(2));
+                    }, productIds.toArray());
+
+            List<Long> shortfalls = new ArrayList<>(requests.size());
+            SortedMap<Long, Integer> totals = new TreeMap<>();
+            for (Map<Long, Integer> request : requests) {
+                Long shortOf = new TreeMap<>(request).entrySet().stream()
+                        .filter(entry -> available.getOrDefault(entry.getKey(), 0) < entry.getValue())
+                        .map(Map.Entry::getKey)
+                        .findFirst()
+                        .orElse(null);
+                if (shortOf == null) {
+                    request.forEach((id, quantity) -> {
+                        available.merge(id, -quantity, Integer::sum);
+                        totals.merge(id, quantity, Integer::sum);
+                    });
+                }
+                shortfalls.add(shortOf);
+            }
+
+            if (!totals.isEmpty()) {
+                int[] updated = decrement(totals);
+                for (int count : updated) {
+                    if (count == 0) {
+                        throw new IllegalStateException("Stock changed while rows were locked");
+                    }
+                }
+            }
+            catalogCache.evictAfterCommit(productIds);
+            return shortfalls;
+        } finally {
+            unlockAfterCompletion(locks);
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Map<Long, Integer> quantities) {
+        SortedMap<Long, Integer> ordered = new TreeMap<>(quantities);
+        List<ReentrantLock> locks = lock(ordered.keySet());
+        try {
+            List<Object[]> args = new ArrayList<>(ordered.size());
+            ordered.forEach((id, quantity) -> args.add(new Object[]{quantity, id}));
+            jdbcTemplate.batchUpdate(INCREMENT_SQL, args);
+            catalogCache.evictAfterCommit(ordered.keySet());
+        } finally {
+            unlockAfterCompletion(locks);
+        }
+    }
+
+    private int[] decrement(SortedMap<Long, Integer> ordered) {
+        List<Object[]> args = new ArrayList<>(ordered.size());
+        ordered.forEach((id, quantity) -> args.add(new Object[]{quantity, id, quantity}));
+        return jdbcTemplate.batchUpdate(DECREMENT_SQL, args);
+    }
+
+    private List<ReentrantLock> lock(Set<Long> productIds) {
+        SortedSet<Integer> indexes = new TreeSet<>();
+        for (Long productId : productIds) {
+            indexes.add(Long.hashCode(productId) & (STRIPES - 1));
+        }
+        List<ReentrantLock> locks = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            ReentrantLock lock = stripes[index];
+            lock.lock();
+            locks.add(lock);
+        }
+        return locks;
+    }
+
+    private void unlockAfterCompletion(List<ReentrantLock> locks) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            unlock(locks);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                unlock(locks);
+            }
+        });
+    }
+
+    private void unlock(List<ReentrantLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    String productName(Long productId) {
+        return productRepository.findById(productId)
+                .map(Product::getName)
+                .orElse(String.valueOf(productId));
+    }
+
+    private static ReentrantLock[] createStripes() {
+        ReentrantLock[] locks = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+}
@@ -0,0 +1,137 @@
+package com.ecommerce.cache;
+
+import com.ecommerce.entity.Cart;
+import com.ecommerce.entity.CartItem;
+import com.ecommerce.entity.Product;
+import com.ecommerce.entity.User;
+import com.ecommerce.enums.Role;
+import com.ecommerce.money.Money;
+import com.ecommerce.repository.CartRepository;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mockingDetails;
+
+/**
+ * Carts evicted with unflushed changes while the database is failing keep those changes: they are
+ * parked instead of written on eviction, survive failed flushes and are written once the database
+ * is back.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cart-store",
+        "app.security.password-hashing.cost=4",
+        "app.cart.store.max-size=1",
+        "app.cart.store.flush-interval=1h"
+})
+class CartStoreTest {
+
+    private static final int USERS = 10;
+
+    @Autowired
+    private CartStore cartStore;
+    @SpyBean
+    private CartRepository cartRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void evictedDirtyCartsAreNotLostWhenWritesFail() throws InterruptedException {
+        AtomicBoolean databaseDown = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            if (databaseDown.get()) {
+                throw new DataAccessResourceFailureException("database unavailable");
+            }
+            // Repositories are interfaces, so the spy's default answer delegates to the real bean
+            return mockingDetails(cartRepository).getMockCreationSettings().getDefaultAnswer().answer(invocation);
+        }).when(cartRepository).saveAndFlush(any());
+
+        Product product = productRepository.save(Product.builder()
+                .name("Parked item")
+                .price(Money.ofMinor(250))
+                .stock(100)
+                .category("Test")
+                .active(true)
+                .build());
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = userRepository.save(User.builder()
+                    .email("parked-" + i + "@test.com")
+                    .password("unused")
+                    .fullName("Parked " + i)
+                    .role(Role.ROLE_USER)
+                    .build());
+            userIds.add(user.getId());
+            int quantity = i + 1;
+            cartStore.update(user.getId(), cart -> cart.set(product.getId(), quantity, 250));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (cartStore.size() > 1 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(cartStore.parkedCount()).isGreaterThan(0);
+        assertThatThrownBy(() -> userIds.forEach(cartStore::flush))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+
+        // A parked cart used again comes back with its changes
+        assertThat(cartStore.get(userIds.get(0)).lines()).singleElement()
+                .satisfies(line -> assertThat(line.quantity()).isEqualTo(1));
+
+        databaseDown.set(false);
+        userIds.forEach(cartStore::flush);
+
+        assertThat(cartStore.parkedCount()).isZero();
+        for (int i = 0; i < USERS; i++) {
+            assertThat(jdbcTemplate.queryForObject("SELECT ci.quantity FROM cart_items ci JOIN carts c ON c.id = ci.cart_id "
+                    + "WHERE c.user_id = ?", Integer.class, userIds.get(i))).isEqualTo(i + 1);
+        }
+    }
+
+    @Test
+    void storedCartIsRepricedInMinorUnitsOfTheCurrency() {
+        Product repriced = productRepository.save(Product.builder()
+                .name("Repriced item").price(Money.ofMinor(1234)).stock(10).category("Test").active(true).build());
+        Product other = productRepository.save(Product.builder()
+                .name("Other item").price(Money.ofMinor(99)).stock(10).category("Test").active(true).build());
+        User user = userRepository.save(User.builder()
+                .email("stored-cart@test.com")
+                .password("unused")
+                .fullName("Stored Cart")
+                .role(Role.ROLE_USER)
+                .build());
+        // Written straight to the tables, so the store has never loaded it
+        Cart cart = Cart.builder().user(user).version(5L).totalItems(2).totalMinor(3 * 1234L + 2 * 99L).build();
+        cart.getItems().add(CartItem.builder().cart(cart).product(repriced).quantity(3).build());
+        cart.getItems().add(CartItem.builder().cart(cart).product(other).quantity(2).build());
+        cartRepository.save(cart);
+
+        repriced.setPrice(Money.of(new BigDecimal("20.05")));
+        productRepository.save(repriced);
+        cartStore.productChanged(repriced.getId(), repriced.getPrice());
+
+        Map<String, Object> stored = jdbcTemplate.queryForMap("SELECT version, total_minor FROM carts WHERE id = ?", cart.getId());
+        assertThat(((Number) stored.get("version")).longValue()).isEqualTo(6);
+        assertThat(((Number) stored.get("total_minor")).longValue()).isEqualTo(3 * 2005L + 2 * 99L);
+    }
+}
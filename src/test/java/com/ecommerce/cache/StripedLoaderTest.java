@@ -0,0 +1,60 @@
+package com.ecommerce.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * An invalidation issued while a load of the same key is running waits for it, so the value read
+ * before the invalidation is never left in the cache.
+ */
+class StripedLoaderTest {
+
+    @Test
+    void invalidationDuringALoadRemovesTheLoadedValue() throws Exception {
+        Cache<Long, String> cache = Caffeine.newBuilder().build();
+        StripedLoader<Long, String> loads = new StripedLoader<>(cache);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> load = CompletableFuture.supplyAsync(() -> loads.get(1L, key -> {
+            loading.countDown();
+            await(release);
+            return "stale";
+        }));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Void> invalidation = CompletableFuture.runAsync(() -> loads.invalidate(1L));
+        Thread.sleep(100);
+        assertThat(invalidation).isNotDone();
+
+        release.countDown();
+        assertThat(load.get(5, TimeUnit.SECONDS)).isEqualTo("stale");
+        invalidation.get(5, TimeUnit.SECONDS);
+
+        assertThat(cache.getIfPresent(1L)).isNull();
+        assertThat(loads.get(1L, key -> "fresh")).isEqualTo("fresh");
+    }
+
+    @Test
+    void missingValuesAreNotCached() {
+        Cache<Long, String> cache = Caffeine.newBuilder().build();
+        StripedLoader<Long, String> loads = new StripedLoader<>(cache);
+
+        assertThat(loads.get(1L, key -> null)).isNull();
+        assertThat(cache.estimatedSize()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
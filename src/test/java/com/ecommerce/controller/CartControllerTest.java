@@ -0,0 +1,120 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.dto.request.ProductRequest;
+import com.ecommerce.entity.Product;
+import com.ecommerce.money.Money;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Conditional cart reads: a 304 carries the cart's current ETag, and any product change that shows in
+ * the cart response gives the cart a new one.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cart-controller",
+        "app.security.password-hashing.cost=4"
+})
+@AutoConfigureMockMvc
+class CartControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductRepository productRepository;
+
+    private String bearer;
+    private Product product;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        product = productRepository.save(Product.builder()
+                .name("Original name")
+                .description("Cart ETag test")
+                .price(Money.ofMinor(1200))
+                .stock(50)
+                .category("Test")
+                .active(true)
+                .build());
+        MvcResult registered = mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of(
+                                "email", "etag-" + product.getId() + "@test.com",
+                                "password", "password123",
+                                "fullName", "ETag User"))))
+                .andExpect(status().isOk())
+                .andReturn();
+        bearer = "Bearer " + objectMapper.readTree(registered.getResponse().getContentAsString()).at("/data/token").asText();
+        mockMvc.perform(post("/api/cart/items")
+                        .header(HttpHeaders.AUTHORIZATION, bearer)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("productId", product.getId(), "quantity", 2))))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void notModifiedReturnsTheCurrentETag() throws Exception {
+        String etag = currentETag();
+
+        mockMvc.perform(get("/api/cart")
+                        .header(HttpHeaders.AUTHORIZATION, bearer)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"stale\", W/" + etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+    }
+
+    @Test
+    void renamingOrDeactivatingAProductChangesTheETag() throws Exception {
+        String original = currentETag();
+
+        ProductRequest rename = new ProductRequest();
+        rename.setName("Renamed");
+        rename.setDescription(product.getDescription());
+        rename.setPrice(product.getPrice().toBigDecimal());
+        rename.setStock(product.getStock());
+        rename.setCategory(product.getCategory());
+        productService.updateProduct(product.getId(), rename);
+
+        mockMvc.perform(get("/api/cart")
+                        .header(HttpHeaders.AUTHORIZATION, bearer)
+                        .header(HttpHeaders.IF_NONE_MATCH, original))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.items[0].productName").value("Renamed"));
+        String renamed = currentETag();
+        assertThat(renamed).isNotEqualTo(original);
+
+        productService.deleteProduct(product.getId());
+
+        mockMvc.perform(get("/api/cart")
+                        .header(HttpHeaders.AUTHORIZATION, bearer)
+                        .header(HttpHeaders.IF_NONE_MATCH, renamed))
+                .andExpect(status().isOk());
+    }
+
+    private String currentETag() throws Exception {
+        return mockMvc.perform(get("/api/cart").header(HttpHeaders.AUTHORIZATION, bearer))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+}
@@ -0,0 +1,72 @@
+package com.ecommerce.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Diagnostics are reported to administrators only; everyone else gets an untouched response even
+ * when they send the header.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:security-config",
+        "app.security.password-hashing.cost=4"
+})
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+class DiagnosticsFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void adminGetsServerTimingIncludingAuthentication() throws Exception {
+        mockMvc.perform(get("/api/orders")
+                        .header(HttpHeaders.AUTHORIZATION, bearer("admin@test.com", "admin123"))
+                        .header(DiagnosticsFilter.HEADER, "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", allOf(containsString("total;dur="),
+                        containsString("auth;dur="), containsString("db;dur="))));
+    }
+
+    @Test
+    void otherCallersGetNoDiagnostics() throws Exception {
+        mockMvc.perform(get("/api/orders")
+                        .header(HttpHeaders.AUTHORIZATION, bearer("user@test.com", "user123"))
+                        .header(DiagnosticsFilter.HEADER, "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Server-Timing"));
+        mockMvc.perform(get("/api/products").header(DiagnosticsFilter.HEADER, "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Server-Timing"));
+        mockMvc.perform(get("/api/orders").header(HttpHeaders.AUTHORIZATION, bearer("admin@test.com", "admin123")))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Server-Timing"));
+    }
+
+    private String bearer(String email, String password) throws Exception {
+        String body = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("email", email, "password", password))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return "Bearer " + objectMapper.readTree(body).at("/data/token").asText();
+    }
+}
@@ -0,0 +1,46 @@
+package com.ecommerce.search;
+
+import com.ecommerce.entity.Product;
+import com.ecommerce.money.Money;
+import com.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A prefix query finds every product with a matching term, however many distinct terms share the prefix.
+ */
+class ProductSearchIndexTest {
+
+    @Test
+    void prefixMatchesEveryExpansion() {
+        // 200 distinct terms share the prefix, far more than any fixed expansion budget
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            products.add(Product.builder()
+                    .id((long) i)
+                    .name(String.format("Gadget%03d", i))
+                    .price(Money.ofMinor(1000))
+                    .stock(1)
+                    .category("Test")
+                    .active(true)
+                    .build());
+        }
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findByActiveTrue()).thenReturn(products);
+        ProductSearchIndex index = new ProductSearchIndex(productRepository, List.of(BigDecimal.TEN));
+        index.rebuild();
+
+        ProductSearchIndex.Result result = index.search(new ProductSearchIndex.Query("gad", null, null, null, 0, 10));
+
+        assertThat(result.total()).isEqualTo(200);
+        assertThat(index.search(new ProductSearchIndex.Query("gadget199", null, null, null, 0, 10)).productIds())
+                .containsExactly(199L);
+    }
+}
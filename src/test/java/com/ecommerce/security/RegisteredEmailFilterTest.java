@@ -0,0 +1,130 @@
+package com.ecommerce.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Users inserted behind this instance's back, as another instance would, can sign in, use their tokens
+ * and cannot be registered twice, although this instance's filter has never seen them.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:security-config",
+        "app.security.password-hashing.cost=4"
+})
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+class RegisteredEmailFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private RegisteredEmailFilter registeredEmails;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private JwtService jwtService;
+
+    @Test
+    void userFromAnotherInstanceCanSignIn() throws Exception {
+        insertElsewhere("elsewhere-login@test.com", "password123");
+        assertThat(registeredEmails.mightContain("elsewhere-login@test.com")).isFalse();
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of(
+                                "email", "elsewhere-login@test.com", "password", "password123"))))
+                .andExpect(status().isOk());
+        assertThat(registeredEmails.mightContain("elsewhere-login@test.com")).isTrue();
+    }
+
+    @Test
+    void failedLoginsForOtherEmailsDoNotHoldBackARecheck() throws Exception {
+        insertElsewhere("elsewhere-busy@test.com", "password123");
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/api/auth/login")
+                            .with(fromAddress("10.0.24." + i))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(Map.of(
+                                    "email", "nobody-" + i + "@test.com", "password", "password123"))))
+                    .andExpect(status().isUnauthorized());
+        }
+        mockMvc.perform(post("/api/auth/login")
+                        .with(fromAddress("10.0.24.100"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of(
+                                "email", "elsewhere-busy@test.com", "password", "password123"))))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void tokenOfAUserFromAnotherInstanceIsAccepted() throws Exception {
+        insertElsewhere("elsewhere-token@test.com", "password123");
+
+        mockMvc.perform(get("/api/orders")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtService.generateToken("elsewhere-token@test.com")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void tokenOfAnUnknownUserIsRejectedAsInvalid() throws Exception {
+        mockMvc.perform(get("/api/orders")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtService.generateToken("deleted@test.com")))
+                .andExpect(status().is4xxClientError());
+    }
+
+    @Test
+    void duplicateOfAUserFromAnotherInstanceIsABadRequest() throws Exception {
+        insertElsewhere("elsewhere-register@test.com", "password123");
+
+        mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of(
+                                "email", "elsewhere-register@test.com", "password", "password123",
+                                "fullName", "Duplicate"))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void rebuildPicksUpUsersFromOtherInstances() {
+        insertElsewhere("elsewhere-rebuild@test.com", "password123");
+
+        registeredEmails.build();
+
+        assertThat(registeredEmails.mightContain("elsewhere-rebuild@test.com")).isTrue();
+    }
+
+    private static RequestPostProcessor fromAddress(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+
+    private void insertElsewhere(String email, String password) {
+        jdbcTemplate.update("INSERT INTO users (email, password, full_name, role, created_at) VALUES (?, ?, ?, ?, ?)",
+                email, passwordEncoder.encode(password), "Elsewhere", "ROLE_USER", LocalDateTime.now());
+    }
+}
@@ -0,0 +1,102 @@
+package com.ecommerce.service;
+
+import com.ecommerce.entity.Order;
+import com.ecommerce.entity.OrderItem;
+import com.ecommerce.entity.Product;
+import com.ecommerce.entity.User;
+import com.ecommerce.enums.OrderStatus;
+import com.ecommerce.enums.Role;
+import com.ecommerce.money.Money;
+import com.ecommerce.repository.OrderRepository;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * Orders left PENDING by an earlier run are picked up again, and an order that keeps failing to confirm
+ * is retried on its own and finally cancelled, without holding back the orders queued with it.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:checkout-queue",
+        "app.security.password-hashing.cost=4",
+        "app.checkout.async.enabled=true",
+        "app.checkout.async.retry-backoff=10ms"
+})
+class CheckoutQueueTest {
+
+    @Autowired
+    private CheckoutQueue checkoutQueue;
+    @SpyBean
+    private OrderConfirmationService confirmationService;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void recoversPendingOrdersAndCancelsOneThatKeepsFailing() throws InterruptedException {
+        Product product = productRepository.save(Product.builder()
+                .name("Queued item")
+                .price(Money.ofMinor(700))
+                .stock(10)
+                .category("Test")
+                .active(true)
+                .build());
+        User user = userRepository.save(User.builder()
+                .email("queue@test.com")
+                .password("unused")
+                .fullName("Queue User")
+                .role(Role.ROLE_USER)
+                .build());
+        Long healthy = pendingOrder(user, product).getId();
+        Long poison = pendingOrder(user, product).getId();
+        doThrow(new CannotAcquireLockException("lock timeout"))
+                .when(confirmationService).confirm(argThat(ids -> ids.contains(poison)));
+
+        checkoutQueue.recoverPending();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (orderRepository.findIdsByStatus(OrderStatus.PENDING).size() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(orderRepository.findById(healthy).orElseThrow().getStatus()).isEqualTo(OrderStatus.CONFIRMED);
+        Order cancelled = orderRepository.findById(poison).orElseThrow();
+        assertThat(cancelled.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        assertThat(cancelled.getStatusReason()).isNotBlank();
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(9);
+        assertThat(checkoutQueue.depth()).isZero();
+    }
+
+    private Order pendingOrder(User user, Product product) {
+        LocalDateTime now = LocalDateTime.now();
+        Order order = Order.builder()
+                .user(user)
+                .totalAmount(product.getPrice())
+                .status(OrderStatus.PENDING)
+                .shippingAddress("1 Test Street")
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        order.getItems().add(OrderItem.builder()
+                .order(order)
+                .product(product)
+                .quantity(1)
+                .price(product.getPrice())
+                .build());
+        return orderRepository.save(order);
+    }
+}
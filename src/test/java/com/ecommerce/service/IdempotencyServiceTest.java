@@ -0,0 +1,170 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cache.CartStore;
+import com.ecommerce.dto.request.CartItemRequest;
+import com.ecommerce.dto.request.CheckoutRequest;
+import com.ecommerce.dto.response.OrderResponse;
+import com.ecommerce.entity.Cart;
+import com.ecommerce.entity.Product;
+import com.ecommerce.entity.User;
+import com.ecommerce.enums.Role;
+import com.ecommerce.money.Money;
+import com.ecommerce.repository.*;
+import com.ecommerce.security.AuthenticatedUser;
+import com.ecommerce.security.CurrentUserProvider;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Two instances sharing the idempotency_records table race on one key: the second misses the first's
+ * record on lookup and then loses on the unique key when it claims it. It must replay the first
+ * instance's response without placing an order or touching the cart.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:idempotency",
+        "app.security.password-hashing.cost=4",
+        "app.idempotency.persistent=true"
+})
+class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private CurrentUserProvider currentUserProvider;
+    @Autowired
+    private IdempotencyRecordRepository recordRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CartRepository cartRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private CartStore cartStore;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void losingInstanceReplaysTheWinningResponse() {
+        Product product = saveProduct("Idempotent item");
+        User user = signIn("idempotency@test.com");
+
+        CheckoutRequest request = checkoutRequest();
+        addToCart(product.getId());
+        OrderResponse first = idempotencyService.checkout("key-1", request, () -> orderService.checkout(request));
+
+        addToCart(product.getId());
+        OrderResponse second = laggingInstance().checkout("key-1", request, () -> orderService.checkout(request));
+
+        assertThat(second.getId()).isEqualTo(first.getId());
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders WHERE user_id = ?", Integer.class,
+                user.getId())).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class,
+                product.getId())).isEqualTo(9);
+    }
+
+    @Test
+    void cartStaysConsistentWhenTheKeyIsLost() {
+        Product product = saveProduct("Idempotent cart item");
+        User user = signIn("idempotency-cart@test.com");
+
+        CheckoutRequest request = checkoutRequest();
+        addToCart(product.getId());
+        idempotencyService.checkout("key-1", request, () -> orderService.checkout(request));
+
+        // The losing checkout must not write the cart in a transaction that is then rolled back
+        addToCart(product.getId());
+        laggingInstance().checkout("key-1", request, () -> orderService.checkout(request));
+
+        cartStore.flush(user.getId());
+        assertThat(jdbcTemplate.queryForObject("SELECT version FROM carts WHERE user_id = ?", Long.class,
+                user.getId())).isEqualTo(cartStore.get(user.getId()).version());
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT SUM(ci.quantity) FROM cart_items ci JOIN carts c ON c.id = ci.cart_id WHERE c.user_id = ?",
+                Integer.class, user.getId())).isEqualTo(1);
+
+        OrderResponse next = idempotencyService.checkout("key-2", request, () -> orderService.checkout(request));
+        assertThat(next.getItems()).hasSize(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class,
+                product.getId())).isEqualTo(8);
+    }
+
+    private Product saveProduct(String name) {
+        return productRepository.save(Product.builder()
+                .name(name)
+                .price(Money.ofMinor(500))
+                .stock(10)
+                .category("Test")
+                .active(true)
+                .build());
+    }
+
+    private User signIn(String email) {
+        User user = userRepository.save(User.builder()
+                .email(email)
+                .password("unused")
+                .fullName("Idempotency User")
+                .role(Role.ROLE_USER)
+                .build());
+        cartRepository.save(Cart.builder().user(user).build());
+        AuthenticatedUser principal = new AuthenticatedUser(user.getId(), user.getEmail(), "",
+                List.of(new SimpleGrantedAuthority(Role.ROLE_USER.name())));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        return user;
+    }
+
+    private CheckoutRequest checkoutRequest() {
+        CheckoutRequest request = new CheckoutRequest();
+        request.setShippingAddress("1 Test Street");
+        return request;
+    }
+
+    // Another instance has its own in-memory store and does not see the record on its first lookup
+    private IdempotencyService laggingInstance() {
+        IdempotencyRecordRepository lagging = mock(IdempotencyRecordRepository.class,
+                AdditionalAnswers.delegatesTo(recordRepository));
+        doReturn(Optional.empty()).doAnswer(AdditionalAnswers.delegatesTo(recordRepository))
+                .when(lagging).findByIdempotencyKey(anyString());
+        return new IdempotencyService(currentUserProvider, lagging, transactionManager,
+                objectMapper, true, 100, Duration.ofHours(24), Duration.ofSeconds(30));
+    }
+
+    private void addToCart(Long productId) {
+        CartItemRequest item = new CartItemRequest();
+        item.setProductId(productId);
+        item.setQuantity(1);
+        cartService.addToCart(item);
+    }
+}
@@ -0,0 +1,42 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cache.CartStore;
+import com.ecommerce.cache.ProductCatalogCache;
+import com.ecommerce.exception.BadRequestException;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.search.ProductSearchIndex;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Search parameters too large to turn into an offset or a price in minor units are client errors.
+ */
+class ProductServiceTest {
+
+    private final ProductSearchIndex searchIndex = mock(ProductSearchIndex.class);
+    private final ProductService productService = new ProductService(mock(ProductRepository.class),
+            mock(ProductCatalogCache.class), mock(CartStore.class), searchIndex);
+
+    @Test
+    void rejectsPageBeyondTheLastRankableHit() {
+        assertThatThrownBy(() -> productService.search("phone", null, null, null, Integer.MAX_VALUE, 100))
+                .isInstanceOf(BadRequestException.class);
+        verify(searchIndex, never()).search(any());
+    }
+
+    @Test
+    void rejectsPricesThatDoNotFitInMinorUnits() {
+        BigDecimal huge = new BigDecimal("1e30");
+        assertThatThrownBy(() -> productService.search("phone", null, huge, null, 0, 20))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("minPrice");
+        assertThatThrownBy(() -> productService.getProducts(null, null, huge, null, 0, 20, null))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("maxPrice");
+    }
+}
@@ -0,0 +1,147 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.response.CartResponse;
+import com.ecommerce.dto.response.OrderPageResponse;
+import com.ecommerce.entity.*;
+import com.ecommerce.enums.OrderStatus;
+import com.ecommerce.enums.Role;
+import com.ecommerce.money.Money;
+import com.ecommerce.repository.CartRepository;
+import com.ecommerce.repository.OrderRepository;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.UserRepository;
+import com.ecommerce.security.AuthenticatedUser;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Guards against N+1 loading: reading a full page of order history or a cart with many lines must
+ * take the same small number of statements however many orders, lines and products are involved.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:read-query-count",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "app.security.password-hashing.cost=4"
+})
+class ReadQueryCountTest {
+
+    private static final int ORDERS = 100;
+    private static final int PRODUCTS = 20;
+    private static final int ITEMS_PER_ORDER = 3;
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CartRepository cartRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(Product.builder()
+                    .name("Product " + i)
+                    .price(Money.ofMinor(1000 + i))
+                    .stock(100)
+                    .category("Test")
+                    .active(true)
+                    .build());
+        }
+        products = productRepository.saveAll(products);
+
+        User user = userRepository.save(User.builder()
+                .email("history-" + System.nanoTime() + "@test.com")
+                .password("unused")
+                .fullName("History User")
+                .role(Role.ROLE_USER)
+                .build());
+
+        Cart cart = Cart.builder().user(user).build();
+        for (Product product : products) {
+            cart.getItems().add(CartItem.builder().cart(cart).product(product).quantity(1).build());
+        }
+        cartRepository.save(cart);
+
+        List<Order> orders = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = Order.builder()
+                    .user(user)
+                    .totalAmount(Money.ofMinor(3000))
+                    .status(OrderStatus.CONFIRMED)
+                    .shippingAddress("1 Test Street")
+                    .createdAt(now.minusMinutes(i))
+                    .updatedAt(now.minusMinutes(i))
+                    .build();
+            for (int j = 0; j < ITEMS_PER_ORDER; j++) {
+                Product product = products.get((i + j) % PRODUCTS);
+                order.getItems().add(OrderItem.builder()
+                        .order(order)
+                        .product(product)
+                        .quantity(1)
+                        .price(product.getPrice())
+                        .build());
+            }
+            orders.add(order);
+        }
+        orderRepository.saveAll(orders);
+
+        AuthenticatedUser principal = new AuthenticatedUser(user.getId(), user.getEmail(), "",
+                List.of(new SimpleGrantedAuthority(Role.ROLE_USER.name())));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void orderHistoryPageTakesAFixedNumberOfStatements() {
+        OrderPageResponse page = orderService.getOrderHistory(null, ORDERS);
+
+        assertThat(page.getOrders()).hasSize(ORDERS);
+        assertThat(page.getOrders()).allSatisfy(order -> assertThat(order.getItems()).hasSize(ITEMS_PER_ORDER));
+        // One query for the page of ids, one for the orders with their items and products
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void cartTakesAFixedNumberOfStatements() {
+        CartResponse cart = cartService.getCart();
+
+        assertThat(cart.getItems()).hasSize(PRODUCTS);
+        // The cart with its lines in one query, the products for their names in at most one more
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+    }
+}
@@ -0,0 +1,84 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Callers of the combiner never wait longer than the timeout, stock allocated to a caller that gave up
+ * is handed back, and nobody is left waiting once the combiner stops.
+ */
+class StockCombinerTest {
+
+    private static final Map<Long, Integer> QUANTITIES = Map.of(1L, 2);
+
+    private final StockReservationService stockReservationService = mock(StockReservationService.class);
+    private final CountDownLatch allocating = new CountDownLatch(1);
+    private final CountDownLatch proceed = new CountDownLatch(1);
+    private StockCombiner combiner;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        proceed.countDown();
+        combiner.destroy();
+    }
+
+    @Test
+    void timedOutReservationIsHandedBack() throws InterruptedException {
+        blockAllocation();
+        combiner = combiner(Duration.ofMillis(200));
+
+        assertThatThrownBy(() -> combiner.reserve(QUANTITIES)).isInstanceOf(ServiceUnavailableException.class);
+
+        proceed.countDown();
+        verify(stockReservationService, timeout(5000)).release(QUANTITIES);
+    }
+
+    @Test
+    void stoppingFailsWaitingAndNewRequests() throws Exception {
+        blockAllocation();
+        combiner = combiner(Duration.ofSeconds(30));
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> inBatch = callers.submit(() -> combiner.reserve(QUANTITIES));
+            assertThat(allocating.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<?> queued = callers.submit(() -> combiner.reserve(QUANTITIES));
+            Thread.sleep(100);
+
+            combiner.destroy();
+
+            assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(ServiceUnavailableException.class);
+            // The batch in flight had its allocation interrupted and is answered with that failure
+            assertThatThrownBy(() -> inBatch.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+            assertThatThrownBy(() -> combiner.reserve(QUANTITIES)).isInstanceOf(ServiceUnavailableException.class);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private void blockAllocation() {
+        when(stockReservationService.allocate(anyList())).thenAnswer(invocation -> {
+            allocating.countDown();
+            proceed.await();
+            return Arrays.asList(new Long[invocation.getArgument(0, List.class).size()]);
+        });
+    }
+
+    private StockCombiner combiner(Duration timeout) {
+        return new StockCombiner(stockReservationService, mock(PlatformTransactionManager.class), true,
+                Duration.ZERO, 256, timeout);
+    }
+}
@@ -0,0 +1,196 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.request.CartItemRequest;
+import com.ecommerce.dto.request.CheckoutRequest;
+import com.ecommerce.entity.Cart;
+import com.ecommerce.entity.Product;
+import com.ecommerce.entity.User;
+import com.ecommerce.enums.OrderStatus;
+import com.ecommerce.enums.Role;
+import com.ecommerce.exception.InsufficientStockException;
+import com.ecommerce.money.Money;
+import com.ecommerce.repository.CartRepository;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.UserRepository;
+import com.ecommerce.security.AuthenticatedUser;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hundreds of buyers check out the last units of one SKU at the same time. Exactly as many orders as
+ * there were units may go through, stock must end at zero and the confirmed order lines must add up
+ * to the units sold. Runs once for each way stock is reserved.
+ */
+class StockReservationConcurrencyTest {
+
+    private static final int STOCK = 25;
+    private static final int BUYERS = 300;
+    private static final int THREADS = 32;
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:reserve",
+            "app.security.password-hashing.cost=4"
+    })
+    class ConditionalDecrement extends Scenario {
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:group-commit",
+            "app.security.password-hashing.cost=4",
+            "app.checkout.group-commit.enabled=true"
+    })
+    class GroupCommit extends Scenario {
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:async",
+            "app.security.password-hashing.cost=4",
+            "app.checkout.async.enabled=true"
+    })
+    class AsyncQueue extends Scenario {
+
+        // Every checkout is accepted as PENDING; stock is only handed out by the queue workers
+        @Override
+        int expectedAccepted() {
+            return BUYERS;
+        }
+
+        @Override
+        void awaitConfirmation(Long productId) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (countOrders(productId, OrderStatus.PENDING) > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    abstract static class Scenario {
+
+        @Autowired
+        OrderService orderService;
+        @Autowired
+        CartService cartService;
+        @Autowired
+        UserRepository userRepository;
+        @Autowired
+        CartRepository cartRepository;
+        @Autowired
+        ProductRepository productRepository;
+        @Autowired
+        JdbcTemplate jdbcTemplate;
+
+        @Test
+        void sellsExactlyTheAvailableStock() throws Exception {
+            Product product = productRepository.save(Product.builder()
+                    .name("Flash sale item")
+                    .price(Money.ofMinor(1999))
+                    .stock(STOCK)
+                    .category("Sale")
+                    .active(true)
+                    .build());
+            List<AuthenticatedUser> buyers = buyersWithOneInCart(product.getId());
+
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<OrderStatus>> checkouts = new ArrayList<>();
+            for (AuthenticatedUser buyer : buyers) {
+                checkouts.add(pool.submit(() -> {
+                    start.await();
+                    return checkout(buyer);
+                }));
+            }
+            start.countDown();
+
+            int accepted = 0;
+            for (Future<OrderStatus> checkout : checkouts) {
+                if (checkout.get(60, TimeUnit.SECONDS) != null) {
+                    accepted++;
+                }
+            }
+            pool.shutdown();
+            awaitConfirmation(product.getId());
+
+            assertThat(accepted).isEqualTo(expectedAccepted());
+            assertThat(countOrders(product.getId(), OrderStatus.PENDING)).isZero();
+            assertThat(countOrders(product.getId(), OrderStatus.CONFIRMED)).isEqualTo(STOCK);
+            assertThat(jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class,
+                    product.getId())).isZero();
+            assertThat(jdbcTemplate.queryForObject("SELECT COALESCE(SUM(i.quantity), 0) FROM order_items i "
+                    + "JOIN orders o ON o.id = i.order_id WHERE i.product_id = ? AND o.status <> 'CANCELLED'",
+                    Integer.class, product.getId())).isEqualTo(STOCK);
+        }
+
+        int expectedAccepted() {
+            return STOCK;
+        }
+
+        void awaitConfirmation(Long productId) throws InterruptedException {
+        }
+
+        int countOrders(Long productId, OrderStatus status) {
+            return jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT o.id) FROM orders o "
+                    + "JOIN order_items i ON i.order_id = o.id WHERE i.product_id = ? AND o.status = ?",
+                    Integer.class, productId, status.name());
+        }
+
+        private List<AuthenticatedUser> buyersWithOneInCart(Long productId) {
+            List<AuthenticatedUser> buyers = new ArrayList<>(BUYERS);
+            for (int i = 0; i < BUYERS; i++) {
+                User user = userRepository.save(User.builder()
+                        .email("buyer-" + productId + "-" + i + "@test.com")
+                        .password("unused")
+                        .fullName("Buyer " + i)
+                        .role(Role.ROLE_USER)
+                        .build());
+                cartRepository.save(Cart.builder().user(user).build());
+                AuthenticatedUser buyer = new AuthenticatedUser(user.getId(), user.getEmail(), "",
+                        List.of(new SimpleGrantedAuthority(Role.ROLE_USER.name())));
+                CartItemRequest item = new CartItemRequest();
+                item.setProductId(productId);
+                item.setQuantity(1);
+                as(buyer, () -> cartService.addToCart(item));
+                buyers.add(buyer);
+            }
+            return buyers;
+        }
+
+        // The order status, or null when the checkout was turned down for lack of stock
+        private OrderStatus checkout(AuthenticatedUser buyer) {
+            CheckoutRequest request = new CheckoutRequest();
+            request.setShippingAddress("1 Test Street");
+            return as(buyer, () -> {
+                try {
+                    return orderService.checkout(request).getStatus();
+                } catch (InsufficientStockException e) {
+                    return null;
+                }
+            });
+        }
+
+        private static <T> T as(AuthenticatedUser user, Supplier<T> action) {
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+            try {
+                return action.get();
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        }
+    }
+}